@@ -44,6 +44,7 @@ public class DataAutoSave implements Runnable {
                 updateProviderNullSafe(guild);
                 if (guild.getAdminRole() != null)
                     guildsDb.updateAdminRole(guild);
+                guildsDb.updateLocale(guild);
             } catch (SQLException ex) {
                 System.err.println(MessageFormat.format(lc("writing-guild-data-failed-reason"),
                         guild.getSnowflake().toString(), ex.getMessage()));
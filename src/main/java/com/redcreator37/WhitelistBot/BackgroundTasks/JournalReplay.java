@@ -0,0 +1,94 @@
+package com.redcreator37.WhitelistBot.BackgroundTasks;
+
+import com.redcreator37.WhitelistBot.DataModels.Guild;
+import com.redcreator37.WhitelistBot.DataModels.MutationJournal;
+import com.redcreator37.WhitelistBot.Database.GameHandling.CircuitBreaker;
+import com.redcreator37.WhitelistBot.DiscordBot;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.text.MessageFormat;
+
+import static com.redcreator37.WhitelistBot.Localizations.lc;
+
+/**
+ * Replays the journaled whitelist changes of all guilds once their
+ * databases can be reached again, reporting the changes the database
+ * rejects to the channels in which they were requested.
+ * <p>
+ * The journals are checked every <code>bot.journal.replaySeconds</code>
+ * seconds and before the queued write-behind changes are written.
+ */
+public final class JournalReplay {
+
+    /**
+     * The time between two checks of the journals in seconds
+     */
+    public static final int INTERVAL_SECONDS = Integer.getInteger("bot.journal.replaySeconds", 10);
+
+    /**
+     * Non-instantiable
+     */
+    private JournalReplay() {
+    }
+
+    /**
+     * Replays the journals of all guilds which have journaled changes,
+     * opening the journals left over from the previous run on the
+     * first call. Has to be subscribed to from a thread which may block
+     * on disk I/O.
+     *
+     * @return an empty {@link Mono}, completed once all guilds are
+     * replayed
+     */
+    public static Mono<Void> replayAll() {
+        return Flux.fromIterable(DiscordBot.guilds.values())
+                .filter(guild -> {
+                    MutationJournal journal = guild.getJournal();
+                    return journal != null && journal.getDepth() > 0;
+                })
+                .flatMap(JournalReplay::replay)
+                .then();
+    }
+
+    /**
+     * Replays the journal of this guild through its mailbox
+     *
+     * @param guild the {@link Guild} to replay
+     * @return an empty {@link Mono}, completed once replayed
+     */
+    public static Mono<Void> replay(Guild guild) {
+        return guild.getMailbox().submit(() -> replayNow(guild));
+    }
+
+    /**
+     * Replays the journal of this guild right away. Has to be called
+     * from a task running in the guild's mailbox.
+     *
+     * @param guild the {@link Guild} to replay
+     * @return an empty {@link Mono}, completed once replayed and the
+     * rejected changes are reported
+     */
+    public static Mono<Void> replayNow(Guild guild) {
+        return guild.openJournal().flatMap(journal -> {
+            if (journal.getDepth() == 0) return Mono.empty();
+            int depth = journal.getDepth();
+            // the changes left over from the previous run may belong to a guild not connected yet
+            return guild.ensureConnected()
+                    .then(Mono.defer(guild::replayJournal))
+                    .flatMap(failed -> {
+                        int replayed = depth - journal.getDepth();
+                        if (replayed > 0) System.out.println(MessageFormat.format(lc("journal-replayed"),
+                                replayed, guild.getSnowflake().asString(), journal.getDepth()));
+                        return WriteBehindFlush.report(guild, failed);
+                    })
+                    .onErrorResume(e -> Mono.fromRunnable(() -> {
+                        // the database went away again, the changes stay journaled
+                        if (!CircuitBreaker.isConnectionFailure(e))
+                            System.err.println(MessageFormat.format(lc("journal-replay-failed"),
+                                    guild.getSnowflake().asString(), e.getMessage()));
+                    }));
+        });
+    }
+
+}
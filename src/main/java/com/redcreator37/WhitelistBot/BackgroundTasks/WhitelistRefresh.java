@@ -0,0 +1,136 @@
+package com.redcreator37.WhitelistBot.BackgroundTasks;
+
+import com.redcreator37.WhitelistBot.DataModels.CacheState;
+import com.redcreator37.WhitelistBot.DataModels.Guild;
+import com.redcreator37.WhitelistBot.Database.BotHandling.CachesDb;
+import com.redcreator37.WhitelistBot.Database.DbExecutor;
+import com.redcreator37.WhitelistBot.DiscordBot;
+import discord4j.common.util.Snowflake;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.sql.SQLException;
+import java.text.MessageFormat;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.redcreator37.WhitelistBot.Localizations.lc;
+
+/**
+ * Refreshes the cached whitelists of all guilds in the background, so
+ * that the players whitelisted outside of the bot become visible.
+ * <p>
+ * Each guild is refreshed once per interval at its own offset within
+ * the interval (derived from its snowflake), so that the refreshes are
+ * spread out instead of all hitting the game databases at once. The
+ * time of each refresh is recorded in the local database.
+ */
+public class WhitelistRefresh implements Runnable {
+
+    /**
+     * The time between two refreshes of the same guild
+     */
+    private static final Duration INTERVAL = Duration.ofMinutes(Integer
+            .getInteger("bot.refresh.intervalMinutes", 10));
+
+    /**
+     * The maximum number of guilds refreshed at the same time
+     */
+    private static final int CONCURRENCY = Integer.getInteger("bot.refresh.concurrency", 2);
+
+    /**
+     * The margin subtracted from the last refresh time when looking for
+     * new players, covering the clock difference to the game database
+     */
+    private static final Duration CLOCK_MARGIN = Duration.ofMinutes(1);
+
+    private final CachesDb cachesDb;
+
+    /**
+     * The time of the last refresh of each guild
+     */
+    private final Map<Snowflake, CacheState> states;
+
+    /**
+     * The time of the next refresh of each guild
+     */
+    private final Map<Snowflake, Instant> due = new ConcurrentHashMap<>();
+
+    /**
+     * Whether the refreshes started by the previous run are still in
+     * progress
+     */
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    /**
+     * Constructs a new WhitelistRefresh instance
+     *
+     * @param cachesDb the connection provider to the cache refresh
+     *                 database
+     * @throws SQLException on errors while reading the previous
+     *                      refreshes
+     */
+    public WhitelistRefresh(CachesDb cachesDb) throws SQLException {
+        this.cachesDb = cachesDb;
+        this.states = new ConcurrentHashMap<>(cachesDb.getCacheState());
+    }
+
+    /**
+     * Starts refreshing the guilds which are due, without waiting for
+     * the refreshes to finish. Nothing is started while the previous
+     * run's refreshes are still in progress.
+     */
+    @Override
+    public void run() {
+        if (!running.compareAndSet(false, true)) return;
+        Instant now = Instant.now();
+        due.keySet().retainAll(DiscordBot.guilds.keySet());
+        Flux.fromIterable(DiscordBot.guilds.values())
+                .filter(guild -> !due.computeIfAbsent(guild.getSnowflake(), this::firstRefresh).isAfter(now))
+                .flatMap(guild -> refresh(guild, now), CONCURRENCY)
+                .doFinally(signal -> running.set(false))
+                .subscribe();
+    }
+
+    /**
+     * Returns the time of the first refresh of this guild
+     *
+     * @param guildId the snowflake of the guild
+     * @return a time within the next interval
+     */
+    private Instant firstRefresh(Snowflake guildId) {
+        long offset = Math.floorMod(guildId.asLong() * 0x9E3779B97F4A7C15L, INTERVAL.toMillis());
+        return Instant.now().plusMillis(offset);
+    }
+
+    /**
+     * Refreshes the whitelist of this guild and records the refresh
+     *
+     * @param guild the {@link Guild} to refresh
+     * @param now   the time of the refresh
+     * @return an empty {@link Mono}, completed once refreshed
+     */
+    private Mono<Void> refresh(Guild guild, Instant now) {
+        Snowflake id = guild.getSnowflake();
+        due.put(id, now.plus(INTERVAL));
+        CacheState previous = states.get(id);
+        Instant since = previous != null ? previous.getLastRefresh().minus(CLOCK_MARGIN) : Instant.EPOCH;
+        CacheState state = new CacheState(id, now);
+        // the queued changes are written first, so that they aren't
+        // undone by the refresh
+        return guild.getMailbox().submit(() -> WriteBehindFlush.flushNow(guild)
+                .then(guild.refreshWhitelist(since)))
+                .then(DbExecutor.run(() -> {
+                    if (previous == null) cachesDb.logFirstRefresh(id);
+                    else cachesDb.logRefresh(state);
+                }))
+                .doOnSuccess(unused -> states.put(id, state))
+                .onErrorResume(e -> Mono.fromRunnable(() -> System.err
+                        .println(MessageFormat.format(lc("refreshing-guild-failed"), id.asString(),
+                                e.getMessage()))));
+    }
+
+}
@@ -0,0 +1,146 @@
+package com.redcreator37.WhitelistBot.BackgroundTasks;
+
+import com.redcreator37.WhitelistBot.Commands.CommandUtils;
+import com.redcreator37.WhitelistBot.DataModels.Guild;
+import com.redcreator37.WhitelistBot.DataModels.WriteBehindQueue;
+import com.redcreator37.WhitelistBot.DiscordBot;
+import com.redcreator37.WhitelistBot.Localizations;
+import discord4j.common.util.Snowflake;
+import discord4j.core.GatewayDiscordClient;
+import discord4j.core.object.entity.channel.MessageChannel;
+import discord4j.rest.util.Color;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.text.MessageFormat;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static com.redcreator37.WhitelistBot.Localizations.lc;
+
+/**
+ * Writes the queued write-behind whitelist changes of all guilds to
+ * their databases and reports the failed changes to the channels in
+ * which they were requested.
+ * <p>
+ * The changes are written every <code>bot.writeBehind.flushSeconds</code>
+ * seconds, as soon as a guild's queue reaches its flush size and before
+ * the operations which read or change the whole whitelist.
+ */
+public final class WriteBehindFlush {
+
+    /**
+     * The time between two scheduled flushes in seconds
+     */
+    public static final int INTERVAL_SECONDS = Integer.getInteger("bot.writeBehind.flushSeconds", 5);
+
+    /**
+     * The client used to report the failures, <code>null</code> until
+     * attached
+     */
+    private static volatile GatewayDiscordClient client = null;
+
+    /**
+     * Non-instantiable
+     */
+    private WriteBehindFlush() {
+    }
+
+    /**
+     * Sets the client used to report the failed changes
+     *
+     * @param client the {@link GatewayDiscordClient} of the bot
+     */
+    public static void attach(GatewayDiscordClient client) {
+        WriteBehindFlush.client = client;
+    }
+
+    /**
+     * Writes the queued changes of all guilds
+     *
+     * @return an empty {@link Mono}, completed once all guilds are
+     * flushed
+     */
+    public static Mono<Void> flushAll() {
+        return Flux.fromIterable(DiscordBot.guilds.values())
+                .filter(guild -> guild.getPendingWrites().size() > 0)
+                .flatMap(WriteBehindFlush::flush)
+                .then();
+    }
+
+    /**
+     * Writes the queued changes of this guild through its mailbox
+     *
+     * @param guild the {@link Guild} to flush
+     * @return an empty {@link Mono}, completed once flushed
+     */
+    public static Mono<Void> flush(Guild guild) {
+        return guild.getMailbox().submit(() -> flushNow(guild));
+    }
+
+    /**
+     * Writes the queued changes of this guild right away, after
+     * replaying its journal. Has to be called from a task running in
+     * the guild's mailbox.
+     *
+     * @param guild the {@link Guild} to flush
+     * @return an empty {@link Mono}, completed once flushed and the
+     * failures are reported
+     */
+    public static Mono<Void> flushNow(Guild guild) {
+        // the journaled changes are older than the queued ones
+        Mono<Void> replay = JournalReplay.replayNow(guild);
+        if (guild.getPendingWrites().size() == 0) return replay;
+        return replay.then(Mono.defer(guild::flushWrites))
+                .flatMap(failed -> report(guild, failed))
+                .onErrorResume(e -> Mono.fromRunnable(() -> System.err.println(MessageFormat
+                        .format(lc("write-behind-flush-failed"), guild.getSnowflake().asString(),
+                                e.getMessage()))));
+    }
+
+    /**
+     * Starts writing the queued changes of this guild in the background
+     * once its queue reaches the flush size
+     *
+     * @param guild the {@link Guild} whose queue to check
+     */
+    public static void flushIfFull(Guild guild) {
+        if (guild.getPendingWrites().size() >= WriteBehindQueue.FLUSH_SIZE) flush(guild).subscribe();
+    }
+
+    /**
+     * Reports these failed changes to the channels in which they were
+     * requested
+     *
+     * @param guild  the {@link Guild} the changes belong to
+     * @param failed the failed changes along with their error messages
+     * @return an empty {@link Mono}, completed once reported
+     */
+    static Mono<Void> report(Guild guild, Map<WriteBehindQueue.Mutation, String> failed) {
+        GatewayDiscordClient current = client;
+        if (failed.isEmpty()) return Mono.empty();
+        Locale locale = guild.getLocale();
+        Map<Snowflake, List<String>> byChannel = new LinkedHashMap<>();
+        failed.forEach((mutation, message) -> byChannel.computeIfAbsent(mutation.getChannelId(),
+                id -> new ArrayList<>()).add(Localizations.format(locale, mutation.isWhitelist()
+                ? "write-behind-whitelist-line" : "write-behind-unlist-line", mutation.getPlayerId(), message)));
+        System.err.println(MessageFormat.format(lc("write-behind-changes-failed"), failed.size(),
+                guild.getSnowflake().asString()));
+        if (current == null) return Mono.empty();
+        return Flux.fromIterable(byChannel.entrySet())
+                .flatMap(entry -> CommandUtils.sendEmbed(current.getChannelById(entry.getKey())
+                        .ofType(MessageChannel.class), spec -> {
+                    spec.setTitle(Localizations.format(locale, "write-behind-failed", entry.getValue().size()));
+                    spec.setColor(Color.RED);
+                    spec.setDescription(lc(locale, "write-behind-reverted"));
+                    spec.addField(lc(locale, "error"), CommandUtils.joinField(entry.getValue()), false);
+                    spec.setTimestamp(Instant.now());
+                }).onErrorResume(e -> Mono.empty()))
+                .then();
+    }
+
+}
@@ -0,0 +1,198 @@
+package com.redcreator37.WhitelistBot.Caching;
+
+import discord4j.common.util.Snowflake;
+import discord4j.core.GatewayDiscordClient;
+import discord4j.core.event.EventDispatcher;
+import discord4j.core.event.domain.UserUpdateEvent;
+import discord4j.core.event.domain.channel.NewsChannelCreateEvent;
+import discord4j.core.event.domain.channel.NewsChannelDeleteEvent;
+import discord4j.core.event.domain.channel.NewsChannelUpdateEvent;
+import discord4j.core.event.domain.channel.TextChannelCreateEvent;
+import discord4j.core.event.domain.channel.TextChannelDeleteEvent;
+import discord4j.core.event.domain.channel.TextChannelUpdateEvent;
+import discord4j.core.event.domain.guild.GuildCreateEvent;
+import discord4j.core.event.domain.guild.GuildDeleteEvent;
+import discord4j.core.event.domain.guild.GuildUpdateEvent;
+import discord4j.core.event.domain.lifecycle.ReadyEvent;
+import discord4j.core.event.domain.message.MessageCreateEvent;
+import discord4j.core.object.entity.Guild;
+import discord4j.core.object.entity.Message;
+import discord4j.core.object.entity.User;
+import discord4j.core.object.entity.channel.GuildMessageChannel;
+import discord4j.core.object.entity.channel.MessageChannel;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An in-process cache of the Discord entities needed when responding
+ * to commands (the bot's own user, guilds and message channels).
+ * <p>
+ * The cache is filled from gateway events and invalidated when the
+ * entities are updated or deleted, falling back to the API (and
+ * caching the result) on misses.
+ */
+public final class EntityCache {
+
+    /**
+     * The user of the currently running bot instance
+     */
+    private static final AtomicReference<User> self = new AtomicReference<>();
+
+    /**
+     * Cached guilds, keyed by their snowflake
+     */
+    private static final Map<Snowflake, Guild> guilds = new ConcurrentHashMap<>();
+
+    /**
+     * Cached message channels, keyed by their snowflake
+     */
+    private static final Map<Snowflake, MessageChannel> channels = new ConcurrentHashMap<>();
+
+    private static final LongAdder selfHits = new LongAdder();
+    private static final LongAdder selfMisses = new LongAdder();
+    private static final LongAdder guildHits = new LongAdder();
+    private static final LongAdder guildMisses = new LongAdder();
+    private static final LongAdder channelHits = new LongAdder();
+    private static final LongAdder channelMisses = new LongAdder();
+
+    /**
+     * Non-instantiable
+     */
+    private EntityCache() {
+    }
+
+    /**
+     * Hooks the cache up to the gateway events of this client
+     *
+     * @param client the {@link GatewayDiscordClient} to listen to
+     */
+    public static void attach(GatewayDiscordClient client) {
+        EventDispatcher dispatcher = client.getEventDispatcher();
+        dispatcher.on(ReadyEvent.class).subscribe(e -> self.set(e.getSelf()));
+        dispatcher.on(UserUpdateEvent.class).subscribe(e -> {
+            User current = self.get();
+            if (current != null && current.getId().equals(e.getCurrent().getId()))
+                self.set(e.getCurrent());
+        });
+        dispatcher.on(GuildCreateEvent.class).subscribe(e -> guilds.put(e.getGuild().getId(), e.getGuild()));
+        dispatcher.on(GuildUpdateEvent.class).subscribe(e -> guilds.put(e.getCurrent().getId(), e.getCurrent()));
+        dispatcher.on(GuildDeleteEvent.class).subscribe(e -> {
+            guilds.remove(e.getGuildId());
+            channels.values().removeIf(channel -> channel instanceof GuildMessageChannel
+                    && ((GuildMessageChannel) channel).getGuildId().equals(e.getGuildId()));
+        });
+        dispatcher.on(TextChannelCreateEvent.class).subscribe(e -> putChannel(e.getChannel()));
+        dispatcher.on(TextChannelUpdateEvent.class).subscribe(e -> putChannel(e.getCurrent()));
+        dispatcher.on(TextChannelDeleteEvent.class).subscribe(e -> channels.remove(e.getChannel().getId()));
+        dispatcher.on(NewsChannelCreateEvent.class).subscribe(e -> putChannel(e.getChannel()));
+        dispatcher.on(NewsChannelUpdateEvent.class).subscribe(e -> putChannel(e.getCurrent()));
+        dispatcher.on(NewsChannelDeleteEvent.class).subscribe(e -> channels.remove(e.getChannel().getId()));
+    }
+
+    /**
+     * Caches this channel
+     *
+     * @param channel the {@link MessageChannel} to cache
+     */
+    private static void putChannel(MessageChannel channel) {
+        channels.put(channel.getId(), channel);
+    }
+
+    /**
+     * Returns the user of the currently running bot instance
+     *
+     * @param client the {@link GatewayDiscordClient} to use on cache
+     *               misses
+     * @return the bot's {@link User}
+     */
+    public static Mono<User> getSelf(GatewayDiscordClient client) {
+        User cached = self.get();
+        if (cached != null) {
+            selfHits.increment();
+            return Mono.just(cached);
+        }
+        selfMisses.increment();
+        return client.getSelf().doOnNext(self::set);
+    }
+
+    /**
+     * Returns the guild in which the {@link MessageCreateEvent} has
+     * occurred
+     *
+     * @param event the {@link MessageCreateEvent} which occurred when
+     *              the message was sent
+     * @return the matching {@link Guild} or an empty {@link Mono} if
+     * the message wasn't sent in a guild
+     */
+    public static Mono<Guild> getGuild(MessageCreateEvent event) {
+        if (!event.getGuildId().isPresent()) return Mono.empty();
+        Guild cached = guilds.get(event.getGuildId().get());
+        if (cached != null) {
+            guildHits.increment();
+            return Mono.just(cached);
+        }
+        guildMisses.increment();
+        return event.getGuild().doOnNext(guild -> guilds.put(guild.getId(), guild));
+    }
+
+    /**
+     * Returns the channel in which this {@link Message} was sent
+     *
+     * @param message the {@link Message} to get the channel for
+     * @return the matching {@link MessageChannel}
+     */
+    public static Mono<MessageChannel> getChannel(Message message) {
+        MessageChannel cached = channels.get(message.getChannelId());
+        if (cached != null) {
+            channelHits.increment();
+            return Mono.just(cached);
+        }
+        channelMisses.increment();
+        return message.getChannel().doOnNext(EntityCache::putChannel);
+    }
+
+    /**
+     * Returns the share of lookups of the bot's own user, answered from
+     * the cache
+     *
+     * @return the hit rate, between <code>0</code> and <code>1</code>
+     */
+    public static double getSelfHitRate() {
+        return hitRate(selfHits, selfMisses);
+    }
+
+    /**
+     * Returns the share of guild lookups, answered from the cache
+     *
+     * @return the hit rate, between <code>0</code> and <code>1</code>
+     */
+    public static double getGuildHitRate() {
+        return hitRate(guildHits, guildMisses);
+    }
+
+    /**
+     * Returns the share of channel lookups, answered from the cache
+     *
+     * @return the hit rate, between <code>0</code> and <code>1</code>
+     */
+    public static double getChannelHitRate() {
+        return hitRate(channelHits, channelMisses);
+    }
+
+    /**
+     * Calculates the hit rate from these counters
+     *
+     * @param hits   the number of cache hits
+     * @param misses the number of cache misses
+     * @return the hit rate, between <code>0</code> and <code>1</code>
+     */
+    private static double hitRate(LongAdder hits, LongAdder misses) {
+        long h = hits.sum(), total = h + misses.sum();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+}
@@ -0,0 +1,56 @@
+package com.redcreator37.WhitelistBot.Commands;
+
+import java.util.Arrays;
+
+/**
+ * Splits command messages into arguments.
+ * <p>
+ * Arguments are separated by any amount of whitespace. An argument
+ * starting with a double quote extends until the closing quote and may
+ * contain whitespace. A backslash escapes the following character, both
+ * inside and outside of quotes (ex. <code>"pass \"word\""</code>).
+ */
+public final class ArgumentTokenizer {
+
+    /**
+     * Non-instantiable
+     */
+    private ArgumentTokenizer() {
+    }
+
+    /**
+     * Splits this text into arguments
+     *
+     * @param text the text to split (ex. the contents of a message)
+     * @return the {@link CommandArguments} view of the arguments
+     */
+    public static CommandArguments tokenize(CharSequence text) {
+        int[] tokens = new int[3 * 8];
+        int count = 0, i = 0, length = text.length();
+        while (true) {
+            while (i < length && Character.isWhitespace(text.charAt(i))) i++;
+            if (i >= length) break;
+            boolean quoted = text.charAt(i) == '"';
+            if (quoted) i++;
+            int start = i, flags = 0;
+            while (i < length) {
+                char c = text.charAt(i);
+                if (c == '\\' && i + 1 < length) {
+                    flags |= CommandArguments.ESCAPED;
+                    i += 2;
+                    continue;
+                }
+                if (quoted ? c == '"' : Character.isWhitespace(c)) break;
+                i++;
+            }
+            if (count * 3 == tokens.length) tokens = Arrays.copyOf(tokens, tokens.length * 2);
+            tokens[count * 3] = start;
+            tokens[count * 3 + 1] = i;
+            tokens[count * 3 + 2] = flags;
+            count++;
+            if (quoted && i < length) i++;  // skip the closing quote
+        }
+        return new CommandArguments(text, tokens, count);
+    }
+
+}
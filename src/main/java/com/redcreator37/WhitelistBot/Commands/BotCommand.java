@@ -1,14 +1,17 @@
 package com.redcreator37.WhitelistBot.Commands;
 
 import com.redcreator37.WhitelistBot.DataModels.Guild;
+import com.redcreator37.WhitelistBot.Localizations;
+import com.redcreator37.WhitelistBot.Permissions.PermissionEngine;
+import discord4j.common.util.Snowflake;
 import discord4j.core.event.domain.message.MessageCreateEvent;
+import discord4j.core.object.entity.Member;
 import discord4j.rest.util.Color;
 import reactor.core.publisher.Mono;
 
-import java.text.MessageFormat;
 import java.time.Instant;
-import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 
 import static com.redcreator37.WhitelistBot.Localizations.lc;
 
@@ -23,92 +26,163 @@ public abstract class BotCommand {
     private final String name;
 
     /**
-     * The description of the action, performed by this command
+     * The localization key of the description of the action, performed
+     * by this command
      */
     private final String description;
 
     /**
-     * The {@link HashMap} of command arguments.
-     * Keys are argument names, values toggle whether a specific
-     * argument is required or not
+     * The compiled argument schema of this command
      */
-    private final HashMap<String, Boolean> arguments;
+    private final CommandSyntax syntax;
+
+    /**
+     * Limits the rate of database-touching commands per guild
+     */
+    private static final RateLimiter<Snowflake> guildLimiter = RateLimiter.fromProperties("guild", 30, 10);
+
+    /**
+     * Limits the rate of database-touching commands per user
+     */
+    private static final RateLimiter<Snowflake> userLimiter = RateLimiter.fromProperties("user", 10, 3);
 
     /**
      * Constructs a new BotCommand instance
      *
      * @param name        the invocation word of the command
-     * @param description the description of the action performed by
-     *                    the command
-     * @param arguments   the {@link HashMap} of arguments, where the
-     *                    boolean values signal whether specific
-     *                    arguments are required or not. Can be
-     *                    <code>null</code> if no arguments are required.
+     * @param description the localization key of the description of the
+     *                    action performed by the command
+     * @param arguments   the arguments in the order they have to be
+     *                    entered, with the required ones first. Can be
+     *                    omitted if the command takes no arguments.
      */
-    public BotCommand(String name, String description, HashMap<String, Boolean> arguments) {
+    public BotCommand(String name, String description, CommandArgument... arguments) {
         this.name = name;
         this.description = description;
-        this.arguments = arguments == null ? new HashMap<>() : arguments;
+        this.syntax = new CommandSyntax(name, arguments);
     }
 
     /**
      * Checks whether the member causing the {@link MessageCreateEvent}
-     * has the permission to invoke the command.
+     * has the permission to invoke the command and embeds an error
+     * message if they don't.
      *
      * @param event        the {@link MessageCreateEvent} which occurred when
      *                     the message was sent
      * @param requiredRole the role, required to run this command
+     * @param locale       the locale of the error message
      * @return <code>true</code> if the user <strong>has</strong> the
      * permission, <code>false</code> otherwise
      */
-    private boolean checkAllowed(MessageCreateEvent event, String requiredRole) {
-        if (!event.getMember().isPresent()) return false;
-        else if (requiredRole == null) return true;
-        boolean permission = CommandUtils.findRole(event.getMember().get(), requiredRole) != null;
-        if (!permission) CommandUtils.getMessageChannel(event).createEmbed(spec -> {
-            spec.setTitle(lc("permission-denied"));
-            spec.setColor(Color.RED);
-            spec.setAuthor(event.getMember().get().getUsername(), null, null);
-            spec.addField(lc("no-permission-to-use-command"), MessageFormat
-                    .format(lc("required-role"), requiredRole), false);
-            spec.setTimestamp(Instant.now());
-        }).block();
-        return permission;
+    private Mono<Boolean> checkAllowed(MessageCreateEvent event, String requiredRole, Locale locale) {
+        if (!event.getMember().isPresent()) return Mono.just(false);
+        else if (requiredRole == null) return Mono.just(true);
+        Member member = event.getMember().get();
+        return PermissionEngine.hasRole(member, requiredRole).flatMap(permission -> {
+            if (permission) return Mono.just(true);
+            return CommandUtils.sendEmbed(CommandUtils.getMessageChannel(event), spec -> {
+                spec.setTitle(lc(locale, "permission-denied"));
+                spec.setColor(Color.RED);
+                spec.setAuthor(member.getUsername(), null, null);
+                spec.addField(lc(locale, "no-permission-to-use-command"),
+                        Localizations.format(locale, "required-role", requiredRole), false);
+                spec.setTimestamp(Instant.now());
+            }).thenReturn(false);
+        });
     }
 
     /**
      * Checks whether the member has the permissions to execute this
      * command and whether the number of entered arguments matches the
      * number of required arguments. This method then returns whether
-     * all these requirements were met.
+     * all these requirements were met and embeds the appropriate error
+     * message if they weren't.
      *
-     * @param enteredArgs the {@link List} of entered arguments
+     * @param enteredArgs the {@link List} of entered arguments, including
+     *                    the command itself
      * @param event       the {@link MessageCreateEvent} which occurred when
      *                    the message was sent
      * @param guild       the {@link Guild} in which the {@link MessageCreateEvent}
      *                    occurred
-     * @return If the requirements are met,  <code>false</code>, otherwise
+     * @return If the requirements are met, <code>true</code>, otherwise
      * <code>false</code>.
      */
-    @SuppressWarnings("BlockingMethodInNonBlockingContext")
     public Mono<Boolean> checkValidity(List<String> enteredArgs, MessageCreateEvent event, Guild guild) {
-        long countReq = arguments.values().stream().filter(req -> req).count();
-        if (checkAllowed(event, guild.getAdminRole())
-                && (enteredArgs == null || enteredArgs.size() >= countReq))
-            return Mono.just(true);
-        CommandUtils.getMessageChannel(event).createEmbed(spec -> {
-            spec.setTitle(lc("syntax-error"));
-            spec.setColor(Color.RED);
-            StringBuilder args = new StringBuilder(100);
-            arguments.forEach((argName, req) ->
-                    args.append(MessageFormat.format(req ? "<{0}> " : "*[{0}]* ", argName)));
-            spec.addField(MessageFormat.format(lc("usage-of"), name),
-                    args.toString(), false);
-            spec.setDescription(description);
-            CommandUtils.setSelfAuthor(event.getGuild(), spec);
+        Locale locale = guild.getLocale();
+        return checkAllowed(event, guild.getAdminRole(), locale).flatMap(allowed -> {
+            if (!allowed) return Mono.just(false);
+            if (enteredArgs == null) return checkRateLimit(event, guild);
+            if (!syntax.accepts(enteredArgs.size() - 1)) return CommandUtils.sendSelfEmbed(event, spec -> {
+                spec.setTitle(lc(locale, "syntax-error"));
+                spec.setColor(Color.RED);
+                spec.addField(syntax.getUsageTitle(locale), syntax.getUsage(), false);
+                spec.setDescription(lc(locale, description));
+                spec.setTimestamp(Instant.now());
+            }).thenReturn(false);
+            List<String> invalid = syntax.findInvalid(enteredArgs);
+            if (invalid.isEmpty()) return checkRateLimit(event, guild);
+            return CommandUtils.sendSelfEmbed(event, spec -> {
+                spec.setTitle(Localizations.format(locale, "invalid-arguments", invalid.size()));
+                spec.setColor(Color.ORANGE);
+                spec.addField(lc(locale, "entered-values"), CommandUtils.joinField(invalid), false);
+                spec.addField(syntax.getUsageTitle(locale), syntax.getUsage(), false);
+                spec.setTimestamp(Instant.now());
+            }).thenReturn(false);
+        });
+    }
+
+    /**
+     * Takes a token from the rate limiter buckets of the guild and the
+     * invoking user if this command is rate limited and embeds an error
+     * message if either of them is empty. No token is taken from the
+     * user's bucket if the guild's bucket is empty.
+     *
+     * @param event the {@link MessageCreateEvent} which occurred when
+     *              the message was sent
+     * @param guild the {@link Guild} in which the {@link MessageCreateEvent}
+     *              occurred
+     * @return <code>true</code> if the command may run,
+     * <code>false</code> otherwise
+     */
+    @SuppressWarnings("OptionalGetWithoutIsPresent")
+    private Mono<Boolean> checkRateLimit(MessageCreateEvent event, Guild guild) {
+        if (!isRateLimited()) return Mono.just(true);
+        Snowflake user = event.getMember().get().getId();
+        long wait = userLimiter.tryAcquire(user);
+        if (wait == 0) {
+            wait = guildLimiter.tryAcquire(guild.getSnowflake());
+            // the command doesn't run, so the user's token isn't spent
+            if (wait != 0) userLimiter.release(user);
+        }
+        if (wait == 0) return Mono.just(true);
+        long seconds = Math.max(1, (wait + 999) / 1000);
+        Locale locale = guild.getLocale();
+        return CommandUtils.sendEmbed(CommandUtils.getMessageChannel(event), spec -> {
+            spec.setTitle(lc(locale, "rate-limited"));
+            spec.setColor(Color.ORANGE);
+            spec.addField(lc(locale, "too-many-requests"),
+                    Localizations.format(locale, "try-again-in", seconds), false);
             spec.setTimestamp(Instant.now());
-        }).block();
-        return Mono.just(false);
+        }).thenReturn(false);
+    }
+
+    /**
+     * Removes the idle rate limiter buckets of all guilds and users
+     */
+    public static void sweepRateLimiters() {
+        guildLimiter.sweep();
+        userLimiter.sweep();
+    }
+
+    /**
+     * Returns whether this command is subject to per-guild and per-user
+     * rate limiting, which should be the case for all commands querying
+     * the game database
+     *
+     * @return <code>true</code> if the command is rate limited
+     */
+    protected boolean isRateLimited() {
+        return false;
     }
 
     /**
@@ -133,4 +207,13 @@ public abstract class BotCommand {
     protected String getName() {
         return name;
     }
+
+    /**
+     * Returns the compiled argument schema of this {@link BotCommand}
+     *
+     * @return the command's syntax descriptor
+     */
+    public CommandSyntax getSyntax() {
+        return syntax;
+    }
 }
@@ -0,0 +1,281 @@
+package com.redcreator37.WhitelistBot.Commands.BotCommands;
+
+import com.redcreator37.WhitelistBot.BackgroundTasks.WriteBehindFlush;
+import com.redcreator37.WhitelistBot.Commands.BotCommand;
+import com.redcreator37.WhitelistBot.Commands.CommandArgument;
+import com.redcreator37.WhitelistBot.Commands.CommandUtils;
+import com.redcreator37.WhitelistBot.DataModels.ChangeResult;
+import com.redcreator37.WhitelistBot.DataModels.Guild;
+import com.redcreator37.WhitelistBot.Localizations;
+import discord4j.core.event.domain.message.MessageCreateEvent;
+import discord4j.core.object.entity.Attachment;
+import discord4j.rest.util.Color;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * A command which changes the whitelist status of many players at once.
+ * <p>
+ * The SteamIDs are read from the command arguments and any text or CSV
+ * attachments of the message. All of them are validated before any
+ * changes are made, and the results are reported in a single embed.
+ * Nothing is changed if any of the attachments can't be read.
+ */
+public abstract class BulkPlayerCommand extends BotCommand {
+
+    /**
+     * The largest attachment which will be read, in bytes
+     */
+    private static final int MAX_ATTACHMENT_SIZE = 1024 * 1024;
+
+    /**
+     * The client used to download the attachments
+     */
+    private static final HttpClient http = HttpClient.create();
+
+    /**
+     * Constructs a new BulkPlayerCommand instance
+     *
+     * @param name        the invocation word of the command
+     * @param description the localization key of the command's
+     *                    description
+     */
+    protected BulkPlayerCommand(String name, String description) {
+        super(name, description, CommandArgument.optional("playerIds...", CommandArgument.Type.STEAM_ID));
+    }
+
+    @Override
+    protected boolean isRateLimited() {
+        return true;
+    }
+
+    /**
+     * Checks whether this player should be skipped without querying the
+     * database (ex. when they're already whitelisted)
+     *
+     * @param playerId the SteamID of the player
+     * @param context  the {@link Guild} in which the command was run
+     * @return the localization key of the reason to skip the player or
+     * an empty {@link Optional} to apply the change
+     */
+    protected abstract Optional<String> skipReason(String playerId, Guild context);
+
+    /**
+     * Applies the change to these players
+     *
+     * @param playerIds the SteamIDs of the players
+     * @param context   the {@link Guild} in which the command was run
+     * @return the results for each of the players
+     */
+    protected abstract Mono<Map<String, ChangeResult>> apply(List<String> playerIds, Guild context);
+
+    /**
+     * Returns the localization key of the summary embed's title
+     *
+     * @return the localization key
+     */
+    protected abstract String getSummaryTitle();
+
+    /**
+     * Runs the action for this command
+     *
+     * @param args    the command arguments entered, can be <code>null</code>
+     *                if none are required
+     * @param context the {@link Guild} context in which to run the
+     *                command. Can be <code>null</code> if no guild is
+     *                tied to the command's working.
+     * @param event   the {@link MessageCreateEvent} which occurred
+     *                when the message was sent
+     * @return an empty {@link Mono} object
+     */
+    @Override
+    public Mono<Void> execute(List<String> args, Guild context, MessageCreateEvent event) {
+        Locale locale = context.getLocale();
+        // the attachments which couldn't be read, mapped to the reason
+        Map<String, String> unreadable = new LinkedHashMap<>();
+        return this.checkValidity(args, event, context).filter(valid -> valid)
+                .flatMap(valid -> CommandUtils.checkDbConnected(event, context)).filter(present -> present)
+                .flatMap(present -> collectPlayerIds(args, event, unreadable, locale))
+                .flatMap(ids -> {
+                    if (!unreadable.isEmpty()) return CommandUtils.sendSelfEmbed(event, spec -> {
+                        spec.setTitle(Localizations.format(locale, "unreadable-attachments", unreadable.size()));
+                        spec.setColor(Color.RED);
+                        spec.setDescription(Localizations.lc(locale, "nothing-changed"));
+                        spec.addField(Localizations.lc(locale, "attachments"), CommandUtils.joinField(
+                                unreadable.entrySet().stream().map(entry -> entry.getKey() + " - " + entry.getValue())
+                                        .collect(Collectors.toList())), false);
+                        spec.setTimestamp(Instant.now());
+                    });
+                    if (ids.isEmpty()) return CommandUtils.sendSelfEmbed(event, spec -> {
+                        spec.setTitle(Localizations.lc(locale, "no-player-ids"));
+                        spec.setColor(Color.RED);
+                        spec.addField(getSyntax().getUsageTitle(locale), getSyntax().getUsage(), false);
+                        spec.setTimestamp(Instant.now());
+                    });
+                    List<String> invalid = ids.stream().filter(CommandUtils::checkIdInvalid)
+                            .collect(Collectors.toList());
+                    if (!invalid.isEmpty()) return CommandUtils.sendSelfEmbed(event, spec -> {
+                        spec.setTitle(Localizations.format(locale, "invalid-player-ids", invalid.size()));
+                        spec.setColor(Color.RED);
+                        spec.setDescription(Localizations.lc(locale, "nothing-changed"));
+                        spec.addField(Localizations.lc(locale, "invalid-id"), CommandUtils.joinField(invalid), false);
+                        spec.setTimestamp(Instant.now());
+                    });
+                    // players which don't need a database round-trip
+                    Map<String, String> skipped = new LinkedHashMap<>();
+                    List<String> pending = new ArrayList<>();
+                    for (String id : ids) {
+                        Optional<String> reason = skipReason(id, context);
+                        if (reason.isPresent()) skipped.put(id, Localizations.lc(locale, reason.get()));
+                        else pending.add(id);
+                    }
+                    // write the queued changes first, so that they don't overlap
+                    return (pending.isEmpty() ? Mono.just(new LinkedHashMap<String, ChangeResult>())
+                            : context.getMailbox().submit(() -> WriteBehindFlush.flushNow(context)
+                            .then(Mono.defer(() -> apply(pending, context)))))
+                            .flatMap(results -> sendSummary(results, skipped, locale, event));
+                });
+    }
+
+    /**
+     * Reads the unique SteamIDs from the command arguments and the
+     * message attachments
+     *
+     * @param args       the command arguments entered
+     * @param event      the {@link MessageCreateEvent} which occurred
+     *                   when the message was sent
+     * @param unreadable the map to put the names of the attachments
+     *                   which couldn't be read into, along with the
+     *                   reason
+     * @param locale     the locale of the guild
+     * @return the SteamIDs in the order they were entered
+     */
+    private Mono<List<String>> collectPlayerIds(List<String> args, MessageCreateEvent event,
+                                                Map<String, String> unreadable, Locale locale) {
+        Set<String> ids = new LinkedHashSet<>(args.subList(1, args.size()));
+        return Flux.fromIterable(event.getMessage().getAttachments())
+                .concatMap(attachment -> readAttachment(attachment, locale)
+                        .onErrorResume(AttachmentException.class, e -> {
+                            unreadable.put(attachment.getFilename(), e.getMessage());
+                            return Mono.empty();
+                        }))
+                .doOnNext(content -> Arrays.stream(content.split("[\\s,;\"']+"))
+                        .filter(id -> !id.isEmpty())
+                        .forEach(ids::add))
+                .then(Mono.fromSupplier(() -> new ArrayList<>(ids)));
+    }
+
+    /**
+     * Downloads the contents of this attachment, accepting only
+     * successful responses with text contents
+     *
+     * @param attachment the {@link Attachment} to download
+     * @param locale     the locale of the guild
+     * @return the text contents of the attachment, or an
+     * {@link AttachmentException} with the reason why it can't be read
+     */
+    private Mono<String> readAttachment(Attachment attachment, Locale locale) {
+        if (attachment.getSize() > MAX_ATTACHMENT_SIZE)
+            return Mono.error(new AttachmentException(Localizations.format(locale,
+                    "attachment-too-large", MAX_ATTACHMENT_SIZE / 1024)));
+        return http.get().uri(attachment.getUrl()).responseSingle((response, body) -> {
+            int status = response.status().code();
+            if (status < 200 || status >= 300)
+                return Mono.error(new AttachmentException(Localizations.format(locale,
+                        "attachment-download-failed", status)));
+            String type = response.responseHeaders().get(HttpHeaderNames.CONTENT_TYPE);
+            if (!isText(attachment.getFilename(), type))
+                return Mono.error(new AttachmentException(Localizations.lc(locale, "attachment-not-text")));
+            return body.asString();
+        }).onErrorMap(e -> !(e instanceof AttachmentException), e ->
+                new AttachmentException(Localizations.format(locale, "attachment-download-error", e.getMessage())));
+    }
+
+    /**
+     * Checks whether this attachment contains plain text or CSV
+     *
+     * @param filename    the name of the attached file
+     * @param contentType the content type sent along with the file, can
+     *                    be <code>null</code>
+     * @return <code>true</code> if the file contains text
+     */
+    private static boolean isText(String filename, String contentType) {
+        if (contentType != null) {
+            String type = contentType.toLowerCase(Locale.ROOT);
+            if (type.startsWith("text/plain") || type.startsWith("text/csv")) return true;
+        }
+        String name = filename.toLowerCase(Locale.ROOT);
+        return name.endsWith(".txt") || name.endsWith(".csv");
+    }
+
+    /**
+     * Thrown when an attachment can't be read, with the reason to show
+     * as the message
+     */
+    private static final class AttachmentException extends RuntimeException {
+
+        AttachmentException(String message) {
+            super(message);
+        }
+
+    }
+
+    /**
+     * Embeds the results of the command into the channel
+     *
+     * @param results the results of the players sent to the database
+     * @param skipped the reasons for skipping the other players
+     * @param locale  the locale of the guild
+     * @param event   the {@link MessageCreateEvent} which occurred when
+     *                the message was sent
+     * @return an empty {@link Mono} object
+     */
+    private Mono<Void> sendSummary(Map<String, ChangeResult> results, Map<String, String> skipped,
+                                   Locale locale, MessageCreateEvent event) {
+        List<String> succeeded = new ArrayList<>(), failed = new ArrayList<>();
+        List<String> skippedLines = skipped.entrySet().stream()
+                .map(entry -> entry.getKey() + " - " + entry.getValue())
+                .collect(Collectors.toCollection(ArrayList::new));
+        results.forEach((id, result) -> {
+            switch (result.getOutcome()) {
+                case CHANGED:
+                    succeeded.add(id);
+                    break;
+                case UNCHANGED:
+                    skippedLines.add(id + " - " + result.getMessage().orElse(""));
+                    break;
+                default:
+                    failed.add(id + " - " + result.getMessage().orElse(""));
+            }
+        });
+        return CommandUtils.sendSelfEmbed(event, spec -> {
+            spec.setTitle(Localizations.lc(locale, getSummaryTitle()));
+            spec.setColor(failed.isEmpty() ? Color.GREEN : succeeded.isEmpty() ? Color.RED : Color.ORANGE);
+            if (!succeeded.isEmpty())
+                spec.addField(Localizations.format(locale, "bulk-succeeded", succeeded.size()),
+                        CommandUtils.joinField(succeeded), false);
+            if (!skippedLines.isEmpty())
+                spec.addField(Localizations.format(locale, "bulk-skipped", skippedLines.size()),
+                        CommandUtils.joinField(skippedLines), false);
+            if (!failed.isEmpty())
+                spec.addField(Localizations.format(locale, "bulk-failed", failed.size()),
+                        CommandUtils.joinField(failed), false);
+            spec.setTimestamp(Instant.now());
+        });
+    }
+
+}
@@ -0,0 +1,36 @@
+package com.redcreator37.WhitelistBot.Commands.BotCommands;
+
+import com.redcreator37.WhitelistBot.DataModels.ChangeResult;
+import com.redcreator37.WhitelistBot.DataModels.Guild;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Removes many players from the whitelist at once
+ */
+public class BulkUnlist extends BulkPlayerCommand {
+
+    public BulkUnlist() {
+        super("bulkunlist", "bulk-unlists-players");
+    }
+
+    @Override
+    protected Optional<String> skipReason(String playerId, Guild context) {
+        return !context.isWhitelistedLocally(playerId).orElse(true)
+                ? Optional.of("player-not-whitelisted") : Optional.empty();
+    }
+
+    @Override
+    protected Mono<Map<String, ChangeResult>> apply(List<String> playerIds, Guild context) {
+        return context.unlistPlayers(playerIds);
+    }
+
+    @Override
+    protected String getSummaryTitle() {
+        return "bulk-unlist-summary";
+    }
+
+}
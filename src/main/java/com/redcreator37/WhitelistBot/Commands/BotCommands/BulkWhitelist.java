@@ -0,0 +1,36 @@
+package com.redcreator37.WhitelistBot.Commands.BotCommands;
+
+import com.redcreator37.WhitelistBot.DataModels.ChangeResult;
+import com.redcreator37.WhitelistBot.DataModels.Guild;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Adds many players to the whitelist at once
+ */
+public class BulkWhitelist extends BulkPlayerCommand {
+
+    public BulkWhitelist() {
+        super("bulkwhitelist", "bulk-whitelists-players");
+    }
+
+    @Override
+    protected Optional<String> skipReason(String playerId, Guild context) {
+        return context.isWhitelistedLocally(playerId).orElse(false)
+                ? Optional.of("player-already-whitelisted") : Optional.empty();
+    }
+
+    @Override
+    protected Mono<Map<String, ChangeResult>> apply(List<String> playerIds, Guild context) {
+        return context.whitelistPlayers(playerIds);
+    }
+
+    @Override
+    protected String getSummaryTitle() {
+        return "bulk-whitelist-summary";
+    }
+
+}
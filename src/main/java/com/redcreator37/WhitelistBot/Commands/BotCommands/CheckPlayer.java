@@ -0,0 +1,56 @@
+package com.redcreator37.WhitelistBot.Commands.BotCommands;
+
+import com.redcreator37.WhitelistBot.Commands.BotCommand;
+import com.redcreator37.WhitelistBot.Commands.CommandArgument;
+import com.redcreator37.WhitelistBot.Commands.CommandUtils;
+import com.redcreator37.WhitelistBot.DataModels.Guild;
+import discord4j.core.event.domain.message.MessageCreateEvent;
+import discord4j.core.object.entity.channel.MessageChannel;
+import discord4j.rest.util.Color;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
+
+import static com.redcreator37.WhitelistBot.Localizations.lc;
+
+/**
+ * Checks whether the specified player is whitelisted
+ */
+public class CheckPlayer extends BotCommand {
+
+    public CheckPlayer() {
+        super("check", "checks-player",
+                CommandArgument.required("playerId", CommandArgument.Type.STEAM_ID));
+    }
+
+    /**
+     * Runs the action for this command
+     *
+     * @param args    the command arguments entered, can be <code>null</code>
+     *                if none are required
+     * @param context the {@link Guild} context in which to run the
+     *                command. Can be <code>null</code> if no guild is
+     *                tied to the command's working.
+     * @param event   the {@link MessageCreateEvent} which occurred
+     *                when the message was sent
+     * @return an empty {@link Mono} object
+     */
+    @Override
+    public Mono<Void> execute(List<String> args, Guild context, MessageCreateEvent event) {
+        Locale locale = context.getLocale();
+        return this.checkValidity(args, event, context).filter(valid -> valid)
+                .flatMap(valid -> CommandUtils.checkDbConnected(event, context)).filter(present -> present)
+                .flatMap(present -> {
+                    String id = args.get(1);
+                    Mono<MessageChannel> channel = CommandUtils.getMessageChannel(event);
+                    return context.isWhitelisted(id).flatMap(whitelisted -> CommandUtils.sendEmbed(channel, spec -> {
+                        spec.setColor(whitelisted ? Color.GREEN : Color.ORANGE);
+                        spec.setTitle(lc(locale, whitelisted ? "player-is-whitelisted" : "player-not-whitelisted"));
+                        spec.addField(lc(locale, "player-id"), id, true);
+                        spec.setTimestamp(Instant.now());
+                    }));
+                });
+    }
+}
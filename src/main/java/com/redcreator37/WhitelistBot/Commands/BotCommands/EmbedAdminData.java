@@ -9,9 +9,9 @@ import discord4j.core.event.domain.message.MessageCreateEvent;
 import discord4j.rest.util.Color;
 import reactor.core.publisher.Mono;
 
-import java.text.MessageFormat;
 import java.time.Instant;
 import java.util.List;
+import java.util.Locale;
 
 /**
  * Embeds data about the current admin role into the channel
@@ -19,7 +19,7 @@ import java.util.List;
 public class EmbedAdminData extends BotCommand {
 
     public EmbedAdminData() {
-        super("getadmin", Localizations.lc("displays-current-admin"), null);
+        super("getadmin", "displays-current-admin");
     }
 
     /**
@@ -34,25 +34,24 @@ public class EmbedAdminData extends BotCommand {
      *                when the message was sent
      * @return an empty {@link Mono} object
      */
-    @SuppressWarnings("BlockingMethodInNonBlockingContext")
     @Override
     public Mono<Void> execute(List<String> args, Guild context, MessageCreateEvent event) {
-        if (!this.checkValidity(args, event, context).block()) return Mono.empty();
-        return CommandUtils.getMessageChannel(event).createEmbed(spec -> {
-            if (context.getAdminRole() == null) {
-                spec.setTitle(Localizations.lc("no-admin-defined"));
-                spec.setColor(Color.RED);
-                spec.addField(Localizations.lc("no-admin-yet"), MessageFormat
-                        .format(Localizations.lc("use-to-set-admin"), DiscordBot.cmdPrefix), false);
-            } else {
-                spec.setTitle(Localizations.lc("admin-data"));
-                spec.setColor(Color.YELLOW);
-                spec.addField(MessageFormat.format(Localizations.lc("current-admin-role"),
-                        context.getAdminRole()), MessageFormat.format(Localizations
-                        .lc("use-to-set-admin"), DiscordBot.cmdPrefix), false);
-            }
-            CommandUtils.setSelfAuthor(event.getGuild(), spec);
-            spec.setTimestamp(Instant.now());
-        }).then();
+        Locale locale = context.getLocale();
+        return this.checkValidity(args, event, context).filter(valid -> valid)
+                .flatMap(valid -> CommandUtils.sendSelfEmbed(event, spec -> {
+                    if (context.getAdminRole() == null) {
+                        spec.setTitle(Localizations.lc(locale, "no-admin-defined"));
+                        spec.setColor(Color.RED);
+                        spec.addField(Localizations.lc(locale, "no-admin-yet"), Localizations
+                                .format(locale, "use-to-set-admin", DiscordBot.cmdPrefix), false);
+                    } else {
+                        spec.setTitle(Localizations.lc(locale, "admin-data"));
+                        spec.setColor(Color.YELLOW);
+                        spec.addField(Localizations.format(locale, "current-admin-role",
+                                context.getAdminRole()), Localizations.format(locale,
+                                "use-to-set-admin", DiscordBot.cmdPrefix), false);
+                    }
+                    spec.setTimestamp(Instant.now());
+                }));
     }
 }
@@ -10,9 +10,9 @@ import discord4j.core.event.domain.message.MessageCreateEvent;
 import discord4j.rest.util.Color;
 import reactor.core.publisher.Mono;
 
-import java.text.MessageFormat;
 import java.time.Instant;
 import java.util.List;
+import java.util.Locale;
 
 /**
  * Embeds the current database data into the chat
@@ -20,7 +20,7 @@ import java.util.List;
 public class EmbedDatabaseData extends BotCommand {
 
     public EmbedDatabaseData() {
-        super("getdatabase", Localizations.lc("displays-current-db"), null);
+        super("getdatabase", "displays-current-db");
     }
 
     /**
@@ -35,22 +35,21 @@ public class EmbedDatabaseData extends BotCommand {
      *                when the message was sent
      * @return an empty {@link Mono} object
      */
-    @SuppressWarnings("BlockingMethodInNonBlockingContext")
     @Override
     public Mono<Void> execute(List<String> args, Guild context, MessageCreateEvent event) {
-        if (!this.checkValidity(args, event, context).block()) return Mono.empty();
-        if (CommandUtils.checkDbNotPresent(event, context)) return Mono.empty();
-        return CommandUtils.getMessageChannel(event).createEmbed(spec -> {
-            SharedDbProvider provider = context.getSharedDbProvider();
-            spec.setTitle(Localizations.lc("db-connect-data"));
-            spec.setColor(Color.GREEN);
-            spec.addField(Localizations.lc("server"), provider.getDbServer(), true);
-            spec.addField(Localizations.lc("db-name"), provider.getDbName(), true);
-            spec.addField(Localizations.lc("username"), provider.getUsername(), true);
-            spec.setDescription(MessageFormat.format(Localizations.lc("to-change-db-run"),
-                    DiscordBot.cmdPrefix));
-            CommandUtils.setSelfAuthor(event.getGuild(), spec);
-            spec.setTimestamp(Instant.now());
-        }).then();
+        Locale locale = context.getLocale();
+        return this.checkValidity(args, event, context).filter(valid -> valid)
+                .flatMap(valid -> CommandUtils.checkDbPresent(event, context)).filter(present -> present)
+                .flatMap(present -> CommandUtils.sendSelfEmbed(event, spec -> {
+                    SharedDbProvider provider = context.getSharedDbProvider();
+                    spec.setTitle(Localizations.lc(locale, "db-connect-data"));
+                    spec.setColor(Color.GREEN);
+                    spec.addField(Localizations.lc(locale, "server"), provider.getDbServer(), true);
+                    spec.addField(Localizations.lc(locale, "db-name"), provider.getDbName(), true);
+                    spec.addField(Localizations.lc(locale, "username"), provider.getUsername(), true);
+                    spec.setDescription(Localizations.format(locale, "to-change-db-run",
+                            DiscordBot.cmdPrefix));
+                    spec.setTimestamp(Instant.now());
+                }));
     }
 }
@@ -0,0 +1,92 @@
+package com.redcreator37.WhitelistBot.Commands.BotCommands;
+
+import com.redcreator37.WhitelistBot.Caching.EntityCache;
+import com.redcreator37.WhitelistBot.Commands.BotCommand;
+import com.redcreator37.WhitelistBot.Commands.CommandUtils;
+import com.redcreator37.WhitelistBot.DataModels.Guild;
+import com.redcreator37.WhitelistBot.DataModels.PlayerIdSet;
+import com.redcreator37.WhitelistBot.DataModels.WhitelistCache;
+import com.redcreator37.WhitelistBot.DataModels.WriteBehindQueue;
+import com.redcreator37.WhitelistBot.Database.DbExecutor;
+import com.redcreator37.WhitelistBot.Database.GameHandling.SharedDbProvider;
+import com.redcreator37.WhitelistBot.Database.StatementCache;
+import com.redcreator37.WhitelistBot.Localizations;
+import discord4j.core.event.domain.message.MessageCreateEvent;
+import discord4j.rest.util.Color;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Embeds the bot's runtime statistics into the channel
+ */
+public class EmbedStats extends BotCommand {
+
+    public EmbedStats() {
+        super("stats", "displays-bot-stats");
+    }
+
+    /**
+     * Runs the action for this command
+     *
+     * @param args    the command arguments entered, can be <code>null</code>
+     *                if none are required
+     * @param context the {@link Guild} context in which to run the
+     *                command. Can be <code>null</code> if no guild is
+     *                tied to the command's working.
+     * @param event   the {@link MessageCreateEvent} which occurred
+     *                when the message was sent
+     * @return an empty {@link Mono} object
+     */
+    @Override
+    public Mono<Void> execute(List<String> args, Guild context, MessageCreateEvent event) {
+        Locale locale = context.getLocale();
+        return this.checkValidity(args, event, context).filter(valid -> valid)
+                .flatMap(valid -> context.openJournal().map(Optional::of).defaultIfEmpty(Optional.empty()))
+                .flatMap(journal -> CommandUtils.sendSelfEmbed(event, spec -> {
+                    spec.setTitle(Localizations.lc(locale, "bot-stats"));
+                    spec.setColor(Color.YELLOW);
+                    spec.addField(Localizations.lc(locale, "db-calls"), Localizations.format(locale,
+                            "db-calls-format", DbExecutor.getCompleted(), DbExecutor.getFailed(),
+                            DbExecutor.getRejected(), DbExecutor.getPending(), DbExecutor.getParallelism(),
+                            DbExecutor.getQueueLimit(), DbExecutor.isVirtual() ? 1 : 0), false);
+                    spec.addField(Localizations.lc(locale, "db-timings"), Localizations.format(locale,
+                            "db-timings-format", DbExecutor.getAverageQueueMillis(),
+                            DbExecutor.getMaxQueueMillis(), DbExecutor.getAverageExecutionMillis(),
+                            DbExecutor.getMaxExecutionMillis()), false);
+                    spec.addField(Localizations.lc(locale, "prepared-statements"), Localizations.format(locale,
+                            "prepared-statements-format", StatementCache.getPrepared(),
+                            StatementCache.getReused()), false);
+                    spec.addField(Localizations.lc(locale, "cache-hit-rates"), Localizations.format(locale,
+                            "cache-hit-rates-format", EntityCache.getSelfHitRate(),
+                            EntityCache.getGuildHitRate(), EntityCache.getChannelHitRate()), false);
+                    PlayerIdSet players = context.getWhitelisted();
+                    if (players != null)
+                        spec.addField(Localizations.lc(locale, "whitelist-memory"), Localizations.format(locale,
+                                "whitelist-memory-format", players.size(), players.getHeapBytes() / 1024.0,
+                                players.getObjectHeapBytes() / 1024.0), false);
+                    WhitelistCache cache = context.getWhitelistCache();
+                    if (cache != null)
+                        spec.addField(Localizations.lc(locale, "bloom-filter"), Localizations.format(locale,
+                                "bloom-filter-format", cache.getFilter().getHeapBytes() / 1024.0,
+                                cache.getFilter().getTargetFpp(), cache.getFalsePositiveRate(),
+                                cache.getLookups(), cache.isCold() ? 1 : 0), false);
+                    SharedDbProvider provider = context.getSharedDbProvider();
+                    if (provider != null) provider.getPoolStats().ifPresent(pool -> spec.addField(Localizations
+                            .lc(locale, "db-pool"), Localizations.format(locale, "db-pool-format",
+                            pool.getActive(), pool.getIdle(), pool.getTotal(), pool.getWaiting(),
+                            pool.getSharedBy()), false));
+                    if (WriteBehindQueue.ENABLED)
+                        spec.addField(Localizations.lc(locale, "write-behind"), Localizations.format(locale,
+                                "write-behind-format", context.getPendingWrites().size(),
+                                context.getPendingWrites().getCoalesced()), false);
+                    journal.ifPresent(current -> spec.addField(Localizations.lc(locale, "journal"),
+                            Localizations.format(locale, "journal-format", current.getDepth(),
+                                    current.getSegments()), false));
+                    spec.setTimestamp(Instant.now());
+                }));
+    }
+}
@@ -0,0 +1,84 @@
+package com.redcreator37.WhitelistBot.Commands.BotCommands;
+
+import com.redcreator37.WhitelistBot.Commands.BotCommand;
+import com.redcreator37.WhitelistBot.Commands.CommandArgument;
+import com.redcreator37.WhitelistBot.Commands.CommandUtils;
+import com.redcreator37.WhitelistBot.DataModels.Guild;
+import com.redcreator37.WhitelistBot.Localizations;
+import discord4j.core.event.domain.message.MessageCreateEvent;
+import discord4j.rest.util.Color;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Finds the whitelisted players whose SteamID starts with the entered
+ * text
+ */
+public class FindPlayers extends BotCommand {
+
+    /**
+     * The maximum number of players listed in the results
+     */
+    private static final int RESULT_LIMIT = Integer.getInteger("bot.find.limit", 25);
+
+    public FindPlayers() {
+        super("find", "finds-players",
+                CommandArgument.required("prefix", CommandArgument.Type.TEXT));
+    }
+
+    /**
+     * Runs the action for this command
+     *
+     * @param args    the command arguments entered, can be <code>null</code>
+     *                if none are required
+     * @param context the {@link Guild} context in which to run the
+     *                command. Can be <code>null</code> if no guild is
+     *                tied to the command's working.
+     * @param event   the {@link MessageCreateEvent} which occurred
+     *                when the message was sent
+     * @return an empty {@link Mono} object
+     */
+    @Override
+    public Mono<Void> execute(List<String> args, Guild context, MessageCreateEvent event) {
+        Locale locale = context.getLocale();
+        return this.checkValidity(args, event, context).filter(valid -> valid)
+                .flatMap(valid -> CommandUtils.checkDbConnected(event, context)).filter(present -> present)
+                .flatMap(present -> {
+                    // allow searching by the hex part of the SteamID only
+                    String prefix = args.get(1).indexOf(':') < 0 ? "steam:" + args.get(1) : args.get(1);
+                    return context.findWhitelisted(prefix, RESULT_LIMIT)
+                            .zipWhen(found -> found.size() < RESULT_LIMIT ? Mono.just(found.size())
+                                    : context.countWhitelisted(prefix))
+                            .flatMap(result -> sendResults(prefix, result.getT1(), result.getT2(), locale, event));
+                });
+    }
+
+    /**
+     * Embeds the search results into the channel
+     *
+     * @param prefix the prefix searched for
+     * @param found  the matching SteamIDs, up to the limit
+     * @param total  the number of all matching players
+     * @param locale the locale of the guild
+     * @param event  the {@link MessageCreateEvent} which occurred when
+     *               the message was sent
+     * @return an empty {@link Mono} object
+     */
+    private Mono<Void> sendResults(String prefix, List<String> found, int total, Locale locale,
+                                   MessageCreateEvent event) {
+        return CommandUtils.sendSelfEmbed(event, spec -> {
+            spec.setTitle(Localizations.format(locale, "search-results-for", prefix));
+            spec.setColor(found.isEmpty() ? Color.ORANGE : Color.YELLOW);
+            if (found.isEmpty()) spec.setDescription(Localizations.lc(locale, "no-players-found"));
+            else {
+                spec.setDescription(Localizations.format(locale, "showing-results",
+                        found.size(), total));
+                spec.addField(Localizations.lc(locale, "player-id"), String.join("\n", found), false);
+            }
+            spec.setTimestamp(Instant.now());
+        });
+    }
+}
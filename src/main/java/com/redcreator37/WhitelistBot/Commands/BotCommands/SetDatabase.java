@@ -1,8 +1,11 @@
 package com.redcreator37.WhitelistBot.Commands.BotCommands;
 
+import com.redcreator37.WhitelistBot.BackgroundTasks.WriteBehindFlush;
 import com.redcreator37.WhitelistBot.Commands.BotCommand;
+import com.redcreator37.WhitelistBot.Commands.CommandArgument;
 import com.redcreator37.WhitelistBot.Commands.CommandUtils;
 import com.redcreator37.WhitelistBot.DataModels.Guild;
+import com.redcreator37.WhitelistBot.Database.DbExecutor;
 import com.redcreator37.WhitelistBot.Database.GameHandling.SharedDbProvider;
 import com.redcreator37.WhitelistBot.Localizations;
 import discord4j.core.event.domain.message.MessageCreateEvent;
@@ -10,24 +13,23 @@ import discord4j.rest.util.Color;
 import reactor.core.publisher.Mono;
 
 import java.time.Instant;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Objects;
+import java.util.Locale;
 
 /**
  * Adds new / modifies existing external database connection data
- * in the guild's {@link com.redcreator37.WhitelistBot.Database.GameHandling.SharedDbProvider}
+ * in the guild's {@link com.redcreator37.WhitelistBot.Database.GameHandling.SharedDbProvider}.
+ * The queued changes are written to the previous database first, and the
+ * ones which can't be written are dropped and reported.
  */
 public class SetDatabase extends BotCommand {
 
     public SetDatabase() {
-        super("setdatabase", "Modifies the database connection data",
-                new HashMap<String, Boolean>() {{
-                    put("server", true);
-                    put("database", true);
-                    put("username", true);
-                    put("password", false);
-                }});
+        super("setdatabase", "modifies-db-data",
+                CommandArgument.required("server", CommandArgument.Type.TEXT),
+                CommandArgument.required("database", CommandArgument.Type.TEXT),
+                CommandArgument.required("username", CommandArgument.Type.TEXT),
+                CommandArgument.optional("password", CommandArgument.Type.PASSWORD));
     }
 
     /**
@@ -42,27 +44,38 @@ public class SetDatabase extends BotCommand {
      *                when the message was sent
      * @return an empty {@link Mono} object
      */
-    @SuppressWarnings("BlockingMethodInNonBlockingContext")
     @Override
     public Mono<Void> execute(List<String> args, Guild context, MessageCreateEvent event) {
-        if (!this.checkValidity(args, event, context).block()) return Mono.empty();
-        String password = args.size() < 5 ? "" : args.get(4);   // allow empty passwords
-        SharedDbProvider provider = new SharedDbProvider(context.getSnowflake(),
-                args.get(1), args.get(3), password, args.get(2));
-        context.setSharedDbProvider(provider);
-        CommandUtils.getMessageChannel(event).createEmbed(spec -> {
-            spec.setTitle(Localizations.lc("db-data-changed"));
-            spec.setColor(Color.CYAN);
-            spec.addField(Localizations.lc("server"), provider.getDbServer(), true);
-            spec.addField(Localizations.lc("db-name"), provider.getDbName(), true);
-            spec.addField(Localizations.lc("username"), provider.getUsername(), true);
-            spec.setDescription(Localizations.lc("connecting-to-db-shortly"));
-            CommandUtils.setSelfAuthor(event.getGuild(), spec);
-            spec.setTimestamp(Instant.now());
-        }).block();
-        CommandUtils.attemptConnectDb(Objects.requireNonNull(event.getMessage()
-                .getChannel().block()), Objects.requireNonNull(event.getGuild().block()));
-        // delete the message containing the credentials
-        return event.getMessage().delete().then();
+        Locale locale = context.getLocale();
+        return this.checkValidity(args, event, context).filter(valid -> valid).flatMap(valid -> {
+            String password = args.size() < 5 ? "" : args.get(4);   // allow empty passwords
+            SharedDbProvider provider = new SharedDbProvider(context.getSnowflake(),
+                    args.get(1), args.get(3), password, args.get(2));
+            // write the changes meant for the previous database first
+            return context.getMailbox().submit(() -> WriteBehindFlush.flushNow(context)
+                    // closing the previous connection pool blocks
+                    .then(DbExecutor.call(() -> context.setSharedDbProvider(provider))))
+                    .filter(dropped -> !dropped.isEmpty())
+                    .flatMap(dropped -> CommandUtils.sendSelfEmbed(event, spec -> {
+                        spec.setTitle(Localizations.format(locale, "pending-changes-dropped", dropped.size()));
+                        spec.setColor(Color.ORANGE);
+                        spec.setDescription(Localizations.lc(locale, "pending-changes-dropped-description"));
+                        spec.addField(Localizations.lc(locale, "player-id"), CommandUtils.joinField(dropped), false);
+                        spec.setTimestamp(Instant.now());
+                    }))
+                    .then(CommandUtils.sendSelfEmbed(event, spec -> {
+                        spec.setTitle(Localizations.lc(locale, "db-data-changed"));
+                        spec.setColor(Color.CYAN);
+                        spec.addField(Localizations.lc(locale, "server"), provider.getDbServer(), true);
+                        spec.addField(Localizations.lc(locale, "db-name"), provider.getDbName(), true);
+                        spec.addField(Localizations.lc(locale, "username"), provider.getUsername(), true);
+                        spec.setDescription(Localizations.lc(locale, "connecting-to-db-shortly"));
+                        spec.setTimestamp(Instant.now());
+                    }))
+                    // assembled once the new provider is set
+                    .then(Mono.defer(() -> CommandUtils.attemptConnectDb(event, context)))
+                    // delete the message containing the credentials
+                    .then(event.getMessage().delete());
+        });
     }
 }
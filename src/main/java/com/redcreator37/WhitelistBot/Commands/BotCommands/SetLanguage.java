@@ -0,0 +1,78 @@
+package com.redcreator37.WhitelistBot.Commands.BotCommands;
+
+import com.redcreator37.WhitelistBot.Commands.BotCommand;
+import com.redcreator37.WhitelistBot.Commands.CommandArgument;
+import com.redcreator37.WhitelistBot.Commands.CommandUtils;
+import com.redcreator37.WhitelistBot.DataModels.Guild;
+import com.redcreator37.WhitelistBot.DiscordBot;
+import com.redcreator37.WhitelistBot.Localizations;
+import discord4j.core.event.domain.message.MessageCreateEvent;
+import discord4j.rest.util.Color;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+/**
+ * Sets the language of the bot's responses for this {@link Guild}
+ */
+public class SetLanguage extends BotCommand {
+
+    public SetLanguage() {
+        super("setlanguage", "sets-language",
+                CommandArgument.required("language", CommandArgument.Type.TEXT));
+    }
+
+    /**
+     * Runs the action for this command
+     *
+     * @param args    the command arguments entered, can be <code>null</code>
+     *                if none are required
+     * @param context the {@link Guild} context in which to run the
+     *                command. Can be <code>null</code> if no guild is
+     *                tied to the command's working.
+     * @param event   the {@link MessageCreateEvent} which occurred
+     *                when the message was sent
+     * @return an empty {@link Mono} object
+     */
+    @Override
+    public Mono<Void> execute(List<String> args, Guild context, MessageCreateEvent event) {
+        return this.checkValidity(args, event, context).filter(valid -> valid)
+                .flatMap(valid -> Mono.justOrEmpty(Localizations.fromLangCode(args.get(1)))
+                        .flatMap(locale -> {
+                            context.setLocale(locale);
+                            return DiscordBot.saveLocale(context).then(CommandUtils.sendSelfEmbed(event, spec -> {
+                                spec.setTitle(Localizations.lc(locale, "language-changed"));
+                                spec.setColor(Color.CYAN);
+                                spec.setDescription(Localizations.format(locale, "language-now",
+                                        locale.getDisplayLanguage(locale)));
+                                spec.setTimestamp(Instant.now());
+                            }));
+                        })
+                        .switchIfEmpty(Mono.defer(() -> unsupportedLanguage(args.get(1),
+                                context.getLocale(), event))));
+    }
+
+    /**
+     * Responds with the list of supported languages
+     *
+     * @param entered the language code entered by the user
+     * @param locale  the current locale of the guild
+     * @param event   the {@link MessageCreateEvent} which occurred
+     *                when the message was sent
+     * @return an empty {@link Mono} object
+     */
+    private Mono<Void> unsupportedLanguage(String entered, Locale locale, MessageCreateEvent event) {
+        String supported = Localizations.SUPPORTED.stream()
+                .map(l -> "`" + l + "` (" + l.getDisplayLanguage(l) + ")")
+                .collect(Collectors.joining(", "));
+        return CommandUtils.sendSelfEmbed(event, spec -> {
+            spec.setTitle(Localizations.format(locale, "unsupported-language", entered));
+            spec.setColor(Color.ORANGE);
+            spec.addField(Localizations.lc(locale, "supported-languages"), supported, false);
+            spec.setTimestamp(Instant.now());
+        });
+    }
+}
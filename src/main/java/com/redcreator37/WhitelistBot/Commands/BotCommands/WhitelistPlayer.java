@@ -1,17 +1,18 @@
 package com.redcreator37.WhitelistBot.Commands.BotCommands;
 
+import com.redcreator37.WhitelistBot.BackgroundTasks.WriteBehindFlush;
 import com.redcreator37.WhitelistBot.Commands.BotCommand;
+import com.redcreator37.WhitelistBot.Commands.CommandArgument;
 import com.redcreator37.WhitelistBot.Commands.CommandUtils;
 import com.redcreator37.WhitelistBot.DataModels.Guild;
-import com.redcreator37.WhitelistBot.Localizations;
 import discord4j.core.event.domain.message.MessageCreateEvent;
 import discord4j.core.object.entity.channel.MessageChannel;
 import discord4j.rest.util.Color;
 import reactor.core.publisher.Mono;
 
 import java.time.Instant;
-import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
 
 import static com.redcreator37.WhitelistBot.Localizations.lc;
@@ -23,10 +24,13 @@ import static com.redcreator37.WhitelistBot.Localizations.lc;
 public class WhitelistPlayer extends BotCommand {
 
     public WhitelistPlayer() {
-        super("whitelist", Localizations.lc("whitelists-player"),
-                new HashMap<String, Boolean>() {{
-                    put("playerName", true);
-                }});
+        super("whitelist", "whitelists-player",
+                CommandArgument.required("playerId", CommandArgument.Type.STEAM_ID));
+    }
+
+    @Override
+    protected boolean isRateLimited() {
+        return true;
     }
 
     /**
@@ -41,25 +45,34 @@ public class WhitelistPlayer extends BotCommand {
      *                when the message was sent
      * @return an empty {@link Mono} object
      */
-    @SuppressWarnings("BlockingMethodInNonBlockingContext")
     @Override
     public Mono<Void> execute(List<String> args, Guild context, MessageCreateEvent event) {
-        if (!this.checkValidity(args, event, context).block()) return Mono.empty();
-        if (CommandUtils.checkDbNotPresent(event, context)) return Mono.empty();
-        MessageChannel channel = CommandUtils.getMessageChannel(event);
-        return channel.createEmbed(spec -> event.getGuild().subscribe(guild -> {
-            if (CommandUtils.invalidPlayerIdEmbed(args.get(1), channel)) return;
-            Optional<String> fail = context.whitelistPlayer(args.get(1));
-            if (!fail.isPresent()) {
-                spec.setColor(Color.GREEN);
-                spec.setTitle(lc("player-whitelisted"));
-                spec.addField(lc("player-id"), args.get(1), true);
-            } else {
-                spec.setColor(Color.RED);
-                spec.setTitle(lc("whitelist-failed"));
-                spec.addField(lc("error"), fail.get(), true);
-            }
-            spec.setTimestamp(Instant.now());
-        })).then();
+        Locale locale = context.getLocale();
+        return this.checkValidity(args, event, context).filter(valid -> valid)
+                .flatMap(valid -> CommandUtils.checkDbConnected(event, context, true)).filter(present -> present)
+                .flatMap(present -> {
+                    String id = args.get(1);
+                    Mono<MessageChannel> channel = CommandUtils.getMessageChannel(event);
+                    // answer duplicates locally instead of waiting for the database
+                    Mono<Optional<String>> result = context.checkWhitelisted(id)
+                            .flatMap(whitelisted -> whitelisted.orElse(false)
+                                    ? Mono.just(Optional.of(lc(locale, "player-already-whitelisted")))
+                                    : context.whitelistPlayer(id, event.getMessage().getChannelId())
+                                    .doOnNext(fail -> WriteBehindFlush.flushIfFull(context)));
+                    return result.flatMap(fail -> CommandUtils.sendEmbed(channel, spec -> {
+                        if (!fail.isPresent()) {
+                            spec.setColor(Color.GREEN);
+                            spec.setTitle(lc(locale, "player-whitelisted"));
+                            spec.addField(lc(locale, "player-id"), id, true);
+                            if (context.isJournaled(id))
+                                spec.setDescription(lc(locale, "change-journaled"));
+                        } else {
+                            spec.setColor(Color.RED);
+                            spec.setTitle(lc(locale, "whitelist-failed"));
+                            spec.addField(lc(locale, "error"), fail.get(), true);
+                        }
+                        spec.setTimestamp(Instant.now());
+                    }));
+                });
     }
 }
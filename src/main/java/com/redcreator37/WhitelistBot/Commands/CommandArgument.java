@@ -0,0 +1,90 @@
+package com.redcreator37.WhitelistBot.Commands;
+
+/**
+ * Describes a single argument of a {@link BotCommand}
+ */
+public final class CommandArgument {
+
+    /**
+     * The kinds of values a command argument accepts
+     */
+    public enum Type {
+        TEXT, STEAM_ID, ROLE, PASSWORD;
+
+        /**
+         * Checks whether this entered value is valid for arguments of
+         * this type
+         *
+         * @param value the entered value
+         * @return <code>true</code> if the value is valid
+         */
+        public boolean accepts(String value) {
+            return this != STEAM_ID || !CommandUtils.checkIdInvalid(value);
+        }
+    }
+
+    private final String name;
+
+    private final Type type;
+
+    private final boolean required;
+
+    /**
+     * Constructs a new CommandArgument instance
+     *
+     * @param name     the name of the argument, as displayed in the
+     *                 usage message
+     * @param type     the kind of value the argument accepts
+     * @param required whether the argument has to be entered
+     */
+    private CommandArgument(String name, Type type, boolean required) {
+        this.name = name;
+        this.type = type;
+        this.required = required;
+    }
+
+    /**
+     * Creates a new required argument
+     *
+     * @param name the name of the argument
+     * @param type the kind of value the argument accepts
+     * @return the argument descriptor
+     */
+    public static CommandArgument required(String name, Type type) {
+        return new CommandArgument(name, type, true);
+    }
+
+    /**
+     * Creates a new optional argument
+     *
+     * @param name the name of the argument
+     * @param type the kind of value the argument accepts
+     * @return the argument descriptor
+     */
+    public static CommandArgument optional(String name, Type type) {
+        return new CommandArgument(name, type, false);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public boolean isRequired() {
+        return required;
+    }
+
+    /**
+     * Checks whether this argument takes all the remaining entered
+     * values, marked by a name ending with <code>...</code>
+     *
+     * @return <code>true</code> if the argument takes multiple values
+     */
+    public boolean isVariadic() {
+        return name.endsWith("...");
+    }
+
+}
@@ -0,0 +1,112 @@
+package com.redcreator37.WhitelistBot.Commands;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * A read-only view of the arguments of a command, backed by the
+ * original message text.
+ * <p>
+ * Arguments are stored as offsets into the message and only turned into
+ * {@link String} objects when they're first accessed. The first argument
+ * is always the invocation word of the command itself.
+ *
+ * @see ArgumentTokenizer
+ */
+public final class CommandArguments extends AbstractList<String> implements RandomAccess {
+
+    /**
+     * The text the arguments were parsed from
+     */
+    private final CharSequence source;
+
+    /**
+     * The start offset, end offset and flags of each argument
+     */
+    private final int[] tokens;
+
+    /**
+     * The number of arguments
+     */
+    private final int count;
+
+    /**
+     * Already materialized arguments, allocated on first access
+     */
+    private String[] values;
+
+    /**
+     * Set in the flags when the argument contains escape sequences
+     */
+    static final int ESCAPED = 1;
+
+    /**
+     * Constructs a new CommandArguments instance
+     *
+     * @param source the text the arguments were parsed from
+     * @param tokens the start offset, end offset and flags of each argument
+     * @param count  the number of arguments
+     */
+    CommandArguments(CharSequence source, int[] tokens, int count) {
+        this.source = source;
+        this.tokens = tokens;
+        this.count = count;
+    }
+
+    /**
+     * Returns the argument at this position, with quotes removed and
+     * escape sequences resolved
+     *
+     * @param index the position of the argument
+     * @return the argument
+     */
+    @Override
+    public String get(int index) {
+        if (index < 0 || index >= count) throw new IndexOutOfBoundsException(String.valueOf(index));
+        if (values == null) values = new String[count];
+        String value = values[index];
+        if (value == null) {
+            int start = tokens[index * 3], end = tokens[index * 3 + 1];
+            value = (tokens[index * 3 + 2] & ESCAPED) == 0
+                    ? source.subSequence(start, end).toString() : unescape(start, end);
+            values[index] = value;
+        }
+        return value;
+    }
+
+    /**
+     * Returns the argument at this position as it was written in the
+     * original text (without the surrounding quotes), without copying
+     * the characters
+     *
+     * @param index the position of the argument
+     * @return the raw argument text
+     */
+    public CharSequence raw(int index) {
+        if (index < 0 || index >= count) throw new IndexOutOfBoundsException(String.valueOf(index));
+        return source.subSequence(tokens[index * 3], tokens[index * 3 + 1]);
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Resolves the escape sequences in this part of the source text
+     *
+     * @param start the start offset
+     * @param end   the end offset
+     * @return the argument with escape sequences resolved
+     */
+    private String unescape(int start, int end) {
+        StringBuilder b = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            char c = source.charAt(i);
+            if (c == '\\' && i + 1 < end) c = source.charAt(++i);
+            b.append(c);
+        }
+        return b.toString();
+    }
+
+}
@@ -0,0 +1,95 @@
+package com.redcreator37.WhitelistBot.Commands;
+
+import discord4j.core.event.domain.message.MessageCreateEvent;
+import reactor.core.publisher.Mono;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Routes incoming messages to the matching {@link Command}.
+ * <p>
+ * Messages which don't start with the command prefix are dropped with
+ * a single character check, before any reactive pipeline is assembled.
+ * The command word is then resolved with one hash lookup.
+ */
+public class CommandRouter {
+
+    /**
+     * The prefix of all commands
+     */
+    private final char prefix;
+
+    /**
+     * Registered commands and their aliases, keyed by the action word.
+     * Only modified while the bot is starting up.
+     */
+    private final Map<String, Command> commands = new HashMap<>();
+
+    /**
+     * Constructs a new CommandRouter instance
+     *
+     * @param prefix the prefix of all commands
+     */
+    public CommandRouter(char prefix) {
+        this.prefix = prefix;
+    }
+
+    /**
+     * Registers this {@link Command} under the specified action word
+     *
+     * @param name    the action word by which the command is executed
+     * @param command the command to execute
+     */
+    public void register(String name, Command command) {
+        commands.put(name, command);
+    }
+
+    /**
+     * Registers an alternative action word for an already registered
+     * command
+     *
+     * @param alias the alternative action word
+     * @param name  the name of the existing command
+     * @throws IllegalArgumentException if no command with this name
+     *                                  was registered yet
+     */
+    public void registerAlias(String alias, String name) {
+        Command command = commands.get(name);
+        if (command == null) throw new IllegalArgumentException(name);
+        commands.put(alias, command);
+    }
+
+    /**
+     * Resolves the command for this message
+     *
+     * @param content the contents of the message
+     * @return the matching {@link Command} or <code>null</code> if the
+     * message doesn't invoke any
+     */
+    Command resolve(String content) {
+        if (content.length() < 2 || content.charAt(0) != prefix) return null;
+        int end = 1;
+        while (end < content.length() && !Character.isWhitespace(content.charAt(end)))
+            end++;
+        return commands.get(content.substring(1, end));
+    }
+
+    /**
+     * Executes the command invoked by this {@link MessageCreateEvent},
+     * if there is any
+     *
+     * @param event the {@link MessageCreateEvent} which occurred when
+     *              the message was sent
+     * @return the result of the command's execution or an empty
+     * {@link Mono} if the message isn't a command
+     */
+    public Mono<Void> route(MessageCreateEvent event) {
+        String content = event.getMessage().getContent();
+        if (content.isEmpty() || content.charAt(0) != prefix || !event.getGuildId().isPresent())
+            return Mono.empty();
+        Command command = resolve(content);
+        return command == null ? Mono.empty() : command.execute(event);
+    }
+
+}
@@ -0,0 +1,126 @@
+package com.redcreator37.WhitelistBot.Commands;
+
+import com.redcreator37.WhitelistBot.Localizations;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The immutable argument schema of a {@link BotCommand}, compiled once
+ * when the command is constructed.
+ * <p>
+ * The number of required arguments and the usage message (for every
+ * supported locale) are computed upfront, so validating the arguments
+ * and rendering a syntax error don't need to do any formatting work.
+ */
+public final class CommandSyntax {
+
+    /**
+     * The arguments in the order they have to be entered
+     */
+    private final List<CommandArgument> arguments;
+
+    /**
+     * The number of required arguments
+     */
+    private final int required;
+
+    /**
+     * The title of the usage message for each supported locale
+     */
+    private final Map<Locale, String> usageTitles = new HashMap<>();
+
+    /**
+     * The usage message, listing all arguments
+     */
+    private final String usage;
+
+    /**
+     * Compiles the syntax of a command
+     *
+     * @param name      the invocation word of the command
+     * @param arguments the arguments in the order they have to be
+     *                  entered, all required arguments first
+     * @throws IllegalArgumentException if an optional argument precedes
+     *                                  a required one
+     */
+    CommandSyntax(String name, CommandArgument... arguments) {
+        this.arguments = Collections.unmodifiableList(Arrays.asList(arguments.clone()));
+        int req = 0;
+        boolean optional = false;
+        StringBuilder b = new StringBuilder(100);
+        for (CommandArgument arg : arguments) {
+            if (arg.isRequired()) {
+                if (optional) throw new IllegalArgumentException(MessageFormat.format(
+                        "{0}: optional arguments must follow the required ones", name));
+                req++;
+            } else optional = true;
+            b.append(MessageFormat.format(arg.isRequired() ? "<{0}> " : "*[{0}]* ", arg.getName()));
+        }
+        this.required = req;
+        Localizations.SUPPORTED.forEach(locale -> usageTitles.put(locale,
+                Localizations.format(locale, "usage-of", name)));
+        this.usage = b.length() == 0 ? "-" : b.toString().trim();
+    }
+
+    /**
+     * Checks whether enough arguments were entered
+     *
+     * @param entered the number of entered arguments, excluding the
+     *                invocation word itself
+     * @return <code>true</code> if all required arguments are present
+     */
+    public boolean accepts(int entered) {
+        return entered >= required;
+    }
+
+    /**
+     * Returns the entered values which aren't valid for the
+     * {@link CommandArgument.Type} of their argument. The values after
+     * the last argument are checked against it if it's variadic and
+     * ignored otherwise.
+     *
+     * @param entered the entered arguments, including the invocation
+     *                word itself
+     * @return the invalid values in the order they were entered
+     */
+    public List<String> findInvalid(List<String> entered) {
+        List<String> invalid = new ArrayList<>();
+        for (int i = 1; i < entered.size() && !arguments.isEmpty(); i++) {
+            if (i > arguments.size() && !arguments.get(arguments.size() - 1).isVariadic()) break;
+            CommandArgument argument = arguments.get(Math.min(i, arguments.size()) - 1);
+            if (!argument.getType().accepts(entered.get(i))) invalid.add(entered.get(i));
+        }
+        return invalid;
+    }
+
+    public List<CommandArgument> getArguments() {
+        return arguments;
+    }
+
+    public int getRequired() {
+        return required;
+    }
+
+    /**
+     * Returns the title of the usage message
+     *
+     * @param locale the locale of the guild the message is sent to
+     * @return the prebuilt title
+     */
+    public String getUsageTitle(Locale locale) {
+        String title = usageTitles.get(locale);
+        return title != null ? title : usageTitles.get(Localizations.DEFAULT_LOCALE);
+    }
+
+    public String getUsage() {
+        return usage;
+    }
+
+}
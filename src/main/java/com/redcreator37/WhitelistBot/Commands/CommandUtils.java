@@ -1,11 +1,12 @@
 package com.redcreator37.WhitelistBot.Commands;
 
+import com.redcreator37.WhitelistBot.Caching.EntityCache;
+import com.redcreator37.WhitelistBot.Database.GameHandling.CircuitBreaker;
 import com.redcreator37.WhitelistBot.DiscordBot;
 import com.redcreator37.WhitelistBot.Localizations;
+import discord4j.core.GatewayDiscordClient;
 import discord4j.core.event.domain.message.MessageCreateEvent;
 import discord4j.core.object.entity.Guild;
-import discord4j.core.object.entity.Member;
-import discord4j.core.object.entity.Role;
 import discord4j.core.object.entity.User;
 import discord4j.core.object.entity.channel.MessageChannel;
 import discord4j.core.spec.EmbedCreateSpec;
@@ -13,8 +14,9 @@ import discord4j.rest.util.Color;
 import reactor.core.publisher.Mono;
 
 import java.sql.SQLException;
-import java.text.MessageFormat;
 import java.time.Instant;
+import java.util.List;
+import java.util.function.Consumer;
 import java.util.regex.Pattern;
 
 import static com.redcreator37.WhitelistBot.Localizations.lc;
@@ -24,6 +26,11 @@ import static com.redcreator37.WhitelistBot.Localizations.lc;
  */
 public class CommandUtils {
 
+    /**
+     * The maximum length of an embed field's value
+     */
+    private static final int MAX_FIELD_LENGTH = 1024;
+
     /**
      * Checks whether this SteamID is not in the correct format
      *
@@ -35,18 +42,6 @@ public class CommandUtils {
         return !Pattern.matches("^steam:[a-zA-Z0-9]+$", id);
     }
 
-    /**
-     * Returns the {@link Role} with the matching name for this {@link Member}
-     *
-     * @param member the {@link Member} which should have the role
-     * @param name   the name of the role to look for
-     * @return the matching {@link Role} or <code>null</code> if the
-     * member lacks it
-     */
-    static Role findRole(Member member, String name) {
-        return member.getRoles().filter(role -> role.getName().equals(name)).blockFirst();
-    }
-
     /**
      * Returns the event channel in which the {@link MessageCreateEvent}
      * has occurred
@@ -55,121 +50,221 @@ public class CommandUtils {
      *              the message was sent
      * @return the matching {@link MessageChannel}
      */
-    public static MessageChannel getMessageChannel(MessageCreateEvent event) {
-        MessageChannel channel = event.getMessage().getChannel().block();
-        assert channel != null;
-        return channel;
+    public static Mono<MessageChannel> getMessageChannel(MessageCreateEvent event) {
+        return EntityCache.getChannel(event.getMessage());
     }
 
     /**
      * Sets the author data for this {@link EmbedCreateSpec} to the currently
      * running bot instance
      *
-     * @param guild the {@link Guild} context to operate on
-     * @param spec  the {@link EmbedCreateSpec} to set the data into
+     * @param bot  the {@link User} of the currently running bot
+     * @param spec the {@link EmbedCreateSpec} to set the data into
      */
-    public static void setSelfAuthor(Mono<Guild> guild, EmbedCreateSpec spec) {
-        guild.flatMap(g -> g.getClient().getSelf().flatMap(bot -> {
-            spec.setAuthor(bot.getUsername(), null, bot.getAvatarUrl());
-            return Mono.empty();
-        })).block();
+    public static void setSelfAuthor(User bot, EmbedCreateSpec spec) {
+        spec.setAuthor(bot.getUsername(), null, bot.getAvatarUrl());
     }
 
     /**
-     * Sends the welcome message to the private channel of the owner
-     * of the guild
+     * Creates a new embed in this {@link MessageChannel}
      *
-     * @param guild the {@link Guild} context to get the data from
+     * @param channel the {@link MessageChannel} to embed the data into
+     * @param spec    the {@link Consumer} which fills in the embed data
+     * @return an empty {@link Mono}, completed once the embed is sent
      */
-    public static void sendWelcome(Guild guild) {
-        guild.getOwner().flatMap(User::getPrivateChannel)
-                .flatMap(channel -> channel.createEmbed(spec -> {
-                    spec.setTitle(lc("hi-there"));
-                    spec.setColor(Color.LIGHT_SEA_GREEN);
-                    spec.addField(lc("finish-setup"), MessageFormat
-                            .format(lc("to-finish-setup-do"), DiscordBot.cmdPrefix), false);
-                    spec.setFooter(MessageFormat.format(lc("received-message-owner"),
-                            guild.getName()), null);
-                    spec.setTimestamp(Instant.now());
-                    CommandUtils.setSelfAuthor(Mono.just(guild), spec);
-                })).block();
+    public static Mono<Void> sendEmbed(Mono<? extends MessageChannel> channel,
+                                       Consumer<? super EmbedCreateSpec> spec) {
+        return channel.flatMap(c -> c.createEmbed(spec)).then();
     }
 
     /**
-     * Checks if this player ID is invalid and embeds an error message
-     * into the passed {@link MessageChannel} if it is
+     * Creates a new embed in this {@link MessageChannel}, authored by the
+     * currently running bot instance
      *
-     * @param id      the ID to check
-     * @param channel the {@link MessageChannel} where the message about
-     *                an invalid ID will be embedded
-     * @return <code>true</code> if the ID is invalid, <code>false</code>
-     * otherwise
+     * @param channel the {@link MessageChannel} to embed the data into
+     * @param client  the {@link GatewayDiscordClient} of the bot
+     * @param spec    the {@link Consumer} which fills in the embed data
+     * @return an empty {@link Mono}, completed once the embed is sent
+     */
+    public static Mono<Void> sendSelfEmbed(Mono<? extends MessageChannel> channel, GatewayDiscordClient client,
+                                           Consumer<? super EmbedCreateSpec> spec) {
+        return Mono.zip(channel, EntityCache.getSelf(client))
+                .flatMap(data -> data.getT1().createEmbed(s -> {
+                    spec.accept(s);
+                    setSelfAuthor(data.getT2(), s);
+                })).then();
+    }
+
+    /**
+     * Creates a new embed, authored by the currently running bot instance,
+     * in the channel in which the {@link MessageCreateEvent} has occurred
+     *
+     * @param event the {@link MessageCreateEvent} which occurred when
+     *              the message was sent
+     * @param spec  the {@link Consumer} which fills in the embed data
+     * @return an empty {@link Mono}, completed once the embed is sent
      */
-    public static boolean invalidPlayerIdEmbed(String id, MessageChannel channel) {
-        if (!checkIdInvalid(id)) return false;
-        channel.createEmbed(spec -> {
-            spec.setTitle(lc("invalid-id"));
-            spec.setColor(Color.ORANGE);
-            spec.addField(lc("entered-id"), id, true);
+    public static Mono<Void> sendSelfEmbed(MessageCreateEvent event, Consumer<? super EmbedCreateSpec> spec) {
+        return sendSelfEmbed(getMessageChannel(event), event.getClient(), spec);
+    }
+
+    /**
+     * Sends the welcome message to the private channel of the owner
+     * of the guild
+     *
+     * @param guild the {@link Guild} context to get the data from
+     * @return an empty {@link Mono}, completed once the message is sent
+     */
+    public static Mono<Void> sendWelcome(Guild guild) {
+        return sendSelfEmbed(guild.getOwner().flatMap(User::getPrivateChannel), guild.getClient(), spec -> {
+            spec.setTitle(lc("hi-there"));
+            spec.setColor(Color.LIGHT_SEA_GREEN);
+            spec.addField(lc("finish-setup"), Localizations
+                    .format("to-finish-setup-do", DiscordBot.cmdPrefix), false);
+            spec.setFooter(Localizations.format("received-message-owner", guild.getName()), null);
             spec.setTimestamp(Instant.now());
-        }).block();
-        return true;
+        });
     }
 
     /**
      * Attempts to connect to the database, specified in this
      * {@link com.redcreator37.WhitelistBot.DataModels.Guild} and embed
-     * the status into the {@link MessageChannel}
+     * the status into the channel in which the {@link MessageCreateEvent}
+     * has occurred
      *
-     * @param channel the {@link MessageChannel} to embed the data into
-     * @param guild   the {@link Guild} to embed the status into
+     * @param event the {@link MessageCreateEvent} which occurred when
+     *              the message was sent
+     * @param guild the {@link com.redcreator37.WhitelistBot.DataModels.Guild}
+     *              to connect the database for
+     * @return an empty {@link Mono}, completed once the status is sent
      */
-    public static void attemptConnectDb(MessageChannel channel, Guild guild) {
-        try {
-            DiscordBot.guilds.get(guild.getId()).connectSharedDb();
-            channel.createEmbed(spec -> {
-                spec.setTitle(Localizations.lc("connected-to-db"));
-                spec.setColor(Color.GREEN);
-                spec.addField(Localizations.lc("db-connect-established"),
-                        Localizations.lc("you-can-now-perform-db-actions"), false);
-                setSelfAuthor(Mono.just(guild), spec);
-                spec.setTimestamp(Instant.now());
-            }).block();
-        } catch (SQLException e) {
-            channel.createEmbed(spec -> {
-                spec.setTitle(Localizations.lc("db-connect-failed"));
-                spec.setColor(Color.RED);
-                spec.addField(Localizations.lc("db-connect-could-not-be-established"),
-                        e.getMessage(), false);
-                spec.setDescription(Localizations.lc("check-connect-data"));
-                setSelfAuthor(Mono.just(guild), spec);
-                spec.setTimestamp(Instant.now());
-            }).block();
-        }
+    public static Mono<Void> attemptConnectDb(MessageCreateEvent event, com.redcreator37.WhitelistBot.DataModels.Guild guild) {
+        return guild.connectSharedDb().then(sendSelfEmbed(event, spec -> {
+            spec.setTitle(lc(guild.getLocale(), "connected-to-db"));
+            spec.setColor(Color.GREEN);
+            spec.addField(lc(guild.getLocale(), "db-connect-established"),
+                    lc(guild.getLocale(), "you-can-now-perform-db-actions"), false);
+            spec.setTimestamp(Instant.now());
+        })).onErrorResume(SQLException.class, e -> sendSelfEmbed(event, spec -> {
+            spec.setTitle(lc(guild.getLocale(), "db-connect-failed"));
+            spec.setColor(Color.RED);
+            spec.addField(lc(guild.getLocale(), "db-connect-could-not-be-established"),
+                    e.getMessage(), false);
+            spec.setDescription(lc(guild.getLocale(), "check-connect-data"));
+            spec.setTimestamp(Instant.now());
+        }));
     }
 
     /**
-     * Checks whether there's no database associated with this
+     * Checks whether there's a database associated with this
      * {@link com.redcreator37.WhitelistBot.DataModels.Guild} and embeds
-     * an error message in this case
+     * an error message if there isn't
      *
      * @param event the {@link MessageCreateEvent} which occurred when
      *              the message was sent
      * @param guild the {@link Guild} context to check
-     * @return <code>true</code> if there's <strong>no</strong> database
-     * data associated, <code>false</code> otherwise
+     * @return <code>true</code> if there's a database associated,
+     * <code>false</code> otherwise
+     */
+    public static Mono<Boolean> checkDbPresent(MessageCreateEvent event, com.redcreator37.WhitelistBot.DataModels.Guild guild) {
+        if (guild.getSharedDbProvider() != null) return Mono.just(true);
+        return sendSelfEmbed(event, spec -> {
+            spec.setTitle(lc(guild.getLocale(), "no-db-yet"));
+            spec.setColor(Color.RED);
+            spec.addField(lc(guild.getLocale(), "no-db-connected"), Localizations
+                    .format(guild.getLocale(), "use-to-connect-db", DiscordBot.cmdPrefix), false);
+            spec.setTimestamp(Instant.now());
+        }).thenReturn(false);
+    }
+
+    /**
+     * Joins these lines into the value of an embed field, leaving out
+     * the lines which don't fit
+     *
+     * @param lines the lines to join
+     * @return the field value
+     */
+    public static String joinField(List<String> lines) {
+        StringBuilder b = new StringBuilder(MAX_FIELD_LENGTH);
+        for (int i = 0; i < lines.size(); i++) {
+            String more = "\n... (+" + (lines.size() - i) + ")";
+            int reserved = i == lines.size() - 1 ? 0 : more.length();
+            if (b.length() + lines.get(i).length() + 1 + reserved > MAX_FIELD_LENGTH) {
+                b.append(more);
+                break;
+            }
+            b.append(lines.get(i)).append('\n');
+        }
+        return b.toString().trim();
+    }
+
+    /**
+     * Embeds the message that the database of this
+     * {@link com.redcreator37.WhitelistBot.DataModels.Guild} can't be
+     * reached at the moment
+     *
+     * @param event the {@link MessageCreateEvent} which occurred when
+     *              the message was sent
+     * @param guild the {@link Guild} whose database is unavailable
+     * @return an empty {@link Mono}, completed once the message is sent
      */
-    public static boolean checkDbNotPresent(MessageCreateEvent event, com.redcreator37.WhitelistBot.DataModels.Guild guild) {
-        if (guild.getSharedDbProvider() != null) return false;
-        getMessageChannel(event).createEmbed(spec -> {
-            spec.setTitle(Localizations.lc("no-db-yet"));
+    public static Mono<Void> dbUnavailableEmbed(MessageCreateEvent event, com.redcreator37.WhitelistBot.DataModels.Guild guild) {
+        return sendSelfEmbed(event, spec -> {
+            spec.setTitle(lc(guild.getLocale(), "db-unavailable"));
             spec.setColor(Color.RED);
-            spec.addField(Localizations.lc("no-db-connected"), MessageFormat
-                    .format(Localizations.lc("use-to-connect-db"), DiscordBot.cmdPrefix), false);
-            setSelfAuthor(event.getGuild(), spec);
+            spec.setDescription(lc(guild.getLocale(), "db-unavailable-description"));
             spec.setTimestamp(Instant.now());
-        }).block();
-        return true;
+        });
+    }
+
+    /**
+     * Checks whether there's a database associated with this
+     * {@link com.redcreator37.WhitelistBot.DataModels.Guild} and connects
+     * to it if that hasn't been done yet, embedding an error message if
+     * the database isn't available
+     *
+     * @param event the {@link MessageCreateEvent} which occurred when
+     *              the message was sent
+     * @param guild the {@link Guild} context to check
+     * @return <code>true</code> if the database is connected,
+     * <code>false</code> otherwise
+     */
+    public static Mono<Boolean> checkDbConnected(MessageCreateEvent event, com.redcreator37.WhitelistBot.DataModels.Guild guild) {
+        return checkDbConnected(event, guild, false);
+    }
+
+    /**
+     * Checks whether there's a database associated with this
+     * {@link com.redcreator37.WhitelistBot.DataModels.Guild} and connects
+     * to it if that hasn't been done yet. If the database can't be
+     * reached, the command may still continue when its changes can be
+     * journaled.
+     *
+     * @param event      the {@link MessageCreateEvent} which occurred
+     *                   when the message was sent
+     * @param guild      the {@link Guild} context to check
+     * @param journaling <code>true</code> if the command's changes can
+     *                   be journaled while the database can't be reached
+     * @return <code>true</code> if the command may continue,
+     * <code>false</code> otherwise
+     */
+    public static Mono<Boolean> checkDbConnected(MessageCreateEvent event, com.redcreator37.WhitelistBot.DataModels.Guild guild,
+                                                 boolean journaling) {
+        return checkDbPresent(event, guild).filter(present -> present)
+                .flatMap(present -> guild.ensureConnected().thenReturn(true))
+                .onErrorResume(e -> journaling && CircuitBreaker.isConnectionFailure(e), e -> guild.openJournal()
+                        .map(journal -> true).switchIfEmpty(Mono.error(e)))
+                .onErrorResume(CircuitBreaker::isConnectionFailure, e -> dbUnavailableEmbed(event, guild)
+                        .thenReturn(false))
+                .onErrorResume(SQLException.class, e -> sendSelfEmbed(event, spec -> {
+                    spec.setTitle(lc(guild.getLocale(), "db-connect-failed"));
+                    spec.setColor(Color.RED);
+                    spec.addField(lc(guild.getLocale(), "db-connect-could-not-be-established"),
+                            e.getMessage(), false);
+                    spec.setDescription(lc(guild.getLocale(), "check-connect-data"));
+                    spec.setTimestamp(Instant.now());
+                }).thenReturn(false))
+                .defaultIfEmpty(false);
     }
 
 }
@@ -0,0 +1,298 @@
+package com.redcreator37.WhitelistBot.Commands;
+
+import com.redcreator37.WhitelistBot.BackgroundTasks.WriteBehindFlush;
+import com.redcreator37.WhitelistBot.Caching.EntityCache;
+import com.redcreator37.WhitelistBot.DataModels.Guild;
+import com.redcreator37.WhitelistBot.DiscordBot;
+import com.redcreator37.WhitelistBot.Localizations;
+import discord4j.common.util.Snowflake;
+import discord4j.core.GatewayDiscordClient;
+import discord4j.core.event.domain.message.MessageCreateEvent;
+import discord4j.core.event.domain.message.ReactionAddEvent;
+import discord4j.core.object.entity.Message;
+import discord4j.core.object.entity.User;
+import discord4j.core.object.reaction.ReactionEmoji;
+import discord4j.core.spec.EmbedCreateSpec;
+import discord4j.rest.util.Color;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Shows the whitelist of a guild in a single message, which the user
+ * can page through using reactions.
+ * <p>
+ * Each page is retrieved from the database when it's requested, using
+ * keyset pagination. The paging sessions are kept in memory for a
+ * limited time and only up to a limited number of sessions at once,
+ * evicting the least recently used one when the limit is reached.
+ */
+public final class ListSessions {
+
+    /**
+     * The state of a single paged message
+     */
+    private static final class Session {
+
+        private final Snowflake guildId;
+
+        /**
+         * The user who is allowed to change the pages
+         */
+        private final Snowflake authorId;
+
+        private final Message message;
+
+        private final User bot;
+
+        /**
+         * The number of whitelisted players when the last page was
+         * retrieved
+         */
+        private volatile int total;
+
+        /**
+         * The last identifiers before each of the visited pages, the
+         * first page starts after an empty string
+         */
+        private final List<String> pageStarts = new ArrayList<>();
+
+        /**
+         * Set while a page is being retrieved, so that quick repeated
+         * reactions don't skip pages
+         */
+        private final AtomicBoolean busy = new AtomicBoolean();
+
+        private volatile int page = 0;
+
+        private volatile boolean hasNext;
+
+        private volatile long lastUsed = System.nanoTime();
+
+        private Session(Snowflake guildId, Snowflake authorId, Message message, User bot, int total,
+                        String lastOnFirstPage) {
+            this.guildId = guildId;
+            this.authorId = authorId;
+            this.message = message;
+            this.bot = bot;
+            this.total = total;
+            this.hasNext = true;
+            pageStarts.add("");
+            pageStarts.add(lastOnFirstPage);
+        }
+
+    }
+
+    /**
+     * The number of players shown on each page
+     */
+    private static final int PAGE_SIZE = Integer.getInteger("bot.list.pageSize", 30);
+
+    /**
+     * The number of players shown in each embed field
+     */
+    private static final int FIELD_SIZE = 10;
+
+    /**
+     * The maximum number of sessions kept at once
+     */
+    private static final int MAX_SESSIONS = Integer.getInteger("bot.list.maxSessions", 100);
+
+    /**
+     * The time after which an unused session expires
+     */
+    private static final long EXPIRY_NANOS = TimeUnit.MINUTES
+            .toNanos(Integer.getInteger("bot.list.expiryMinutes", 5));
+
+    private static final ReactionEmoji PREVIOUS = ReactionEmoji.unicode("\u25C0");
+
+    private static final ReactionEmoji NEXT = ReactionEmoji.unicode("\u25B6");
+
+    /**
+     * The active sessions, keyed by the snowflake of their message
+     */
+    private static final Map<Snowflake, Session> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * Non-instantiable
+     */
+    private ListSessions() {
+    }
+
+    /**
+     * Hooks the page navigation up to the reaction events of this
+     * client
+     *
+     * @param client the {@link GatewayDiscordClient} to listen to
+     */
+    public static void attach(GatewayDiscordClient client) {
+        client.getEventDispatcher().on(ReactionAddEvent.class)
+                .flatMap(e -> navigate(e).onErrorResume(ex -> Mono.empty()))
+                .subscribe();
+    }
+
+    /**
+     * Sends the first page of this guild's whitelist and starts a
+     * paging session if there are more pages. The queued changes are
+     * written first, so that every page matches the database.
+     *
+     * @param guild the {@link Guild} whose whitelist to show
+     * @param event the {@link MessageCreateEvent} which occurred when
+     *              the message was sent
+     * @return an empty {@link Mono} object
+     */
+    @SuppressWarnings("OptionalGetWithoutIsPresent")
+    public static Mono<Void> start(Guild guild, MessageCreateEvent event) {
+        return Mono.zip(readPage(guild, ""), CommandUtils.getMessageChannel(event),
+                EntityCache.getSelf(event.getClient()))
+                .flatMap(data -> {
+                    List<String> players = data.getT1().getT1();
+                    boolean hasNext = players.size() > PAGE_SIZE;
+                    List<String> page = hasNext ? players.subList(0, PAGE_SIZE) : players;
+                    int total = data.getT1().getT2();
+                    return data.getT2().createEmbed(spec -> renderPage(spec, guild, page, 0, total, data.getT3()))
+                            .flatMap(message -> {
+                                if (!hasNext) return Mono.empty();
+                                put(new Session(guild.getSnowflake(), event.getMessage().getAuthor().get()
+                                        .getId(), message, data.getT3(), total, page.get(page.size() - 1)));
+                                return message.addReaction(PREVIOUS).then(message.addReaction(NEXT));
+                            });
+                });
+    }
+
+    /**
+     * Changes the page of the session this reaction belongs to
+     *
+     * @param event the {@link ReactionAddEvent} which occurred when the
+     *              reaction was added
+     * @return an empty {@link Mono} object
+     */
+    private static Mono<Void> navigate(ReactionAddEvent event) {
+        Session session = sessions.get(event.getMessageId());
+        if (session == null || !session.authorId.equals(event.getUserId())) return Mono.empty();
+        Guild guild = DiscordBot.guilds.get(session.guildId);
+        if (guild == null) return Mono.empty();
+        Mono<Void> removeReaction = session.message.removeReaction(event.getEmoji(), event.getUserId())
+                .onErrorResume(e -> Mono.empty()); // requires the permission to manage messages
+        int target = event.getEmoji().equals(NEXT) && session.hasNext ? session.page + 1
+                : event.getEmoji().equals(PREVIOUS) && session.page > 0 ? session.page - 1 : session.page;
+        if (target == session.page || !session.busy.compareAndSet(false, true)) return removeReaction;
+        session.lastUsed = System.nanoTime();
+        return readPage(guild, session.pageStarts.get(target))
+                .flatMap(data -> {
+                    List<String> players = data.getT1();
+                    boolean hasNext = players.size() > PAGE_SIZE;
+                    List<String> page = hasNext ? players.subList(0, PAGE_SIZE) : players;
+                    if (hasNext && session.pageStarts.size() == target + 1)
+                        session.pageStarts.add(page.get(page.size() - 1));
+                    session.page = target;
+                    session.hasNext = hasNext;
+                    session.total = data.getT2();
+                    return session.message.edit(spec -> spec.setEmbed(embed ->
+                            renderPage(embed, guild, page, target, session.total, session.bot)));
+                })
+                .doFinally(signal -> session.busy.set(false))
+                .then(removeReaction);
+    }
+
+    /**
+     * Retrieves a page of players along with the number of all
+     * whitelisted players through the guild's mailbox, after writing
+     * its queued changes, so that both are read from the same state of
+     * the database. Cold guilds count the players in the database, as
+     * they don't keep them in memory.
+     *
+     * @param guild the {@link Guild} whose whitelist to read
+     * @param after the last identifier before the page
+     * @return the players on the page (with one extra to check for the
+     * next page) and the number of all players
+     */
+    private static Mono<Tuple2<List<String>, Integer>> readPage(Guild guild, String after) {
+        return guild.getMailbox().submit(() -> WriteBehindFlush.flushNow(guild)
+                .then(Mono.defer(() -> Mono.zip(guild.getWhitelistedPage(after, PAGE_SIZE + 1),
+                        guild.countWhitelisted("")))));
+    }
+
+    /**
+     * Renders this page of players into the embed
+     *
+     * @param spec    the {@link EmbedCreateSpec} to render into
+     * @param guild   the {@link Guild} whose whitelist is shown
+     * @param players the identifiers of the players on the page
+     * @param page    the index of the page
+     * @param total   the number of whitelisted players
+     * @param bot     the {@link User} of the currently running bot
+     */
+    private static void renderPage(EmbedCreateSpec spec, Guild guild, List<String> players, int page,
+                                   int total, User bot) {
+        Locale locale = guild.getLocale();
+        int pages = Math.max(1, (total + PAGE_SIZE - 1) / PAGE_SIZE);
+        spec.setTitle(Localizations.format(locale, "whitelisted-players-format", page + 1,
+                Math.max(pages, page + 1)));
+        spec.setColor(Color.YELLOW);
+        if (players.isEmpty()) spec.setDescription(Localizations.lc(locale, "no-whitelisted-players"));
+        for (int i = 0; i < players.size(); i += FIELD_SIZE) {
+            List<String> field = players.subList(i, Math.min(i + FIELD_SIZE, players.size()));
+            spec.addField("`[" + (page * PAGE_SIZE + i + 1) + "-" + (page * PAGE_SIZE + i + field.size()) + "]`",
+                    String.join("\n", field), true);
+        }
+        CommandUtils.setSelfAuthor(bot, spec);
+        spec.setTimestamp(Instant.now());
+    }
+
+    /**
+     * Registers this session, evicting the least recently used one if
+     * the limit has been reached
+     *
+     * @param session the new session
+     */
+    private static void put(Session session) {
+        if (sessions.size() >= MAX_SESSIONS)
+            sessions.entrySet().stream()
+                    .min(Comparator.comparingLong(entry -> entry.getValue().lastUsed))
+                    .ifPresent(entry -> expire(entry.getKey()));
+        sessions.put(session.message.getId(), session);
+    }
+
+    /**
+     * Removes the session of this message and its navigation reactions
+     *
+     * @param messageId the snowflake of the session's message
+     */
+    private static void expire(Snowflake messageId) {
+        Session session = sessions.remove(messageId);
+        if (session != null) session.message.removeAllReactions()
+                .onErrorResume(e -> Mono.empty())
+                .subscribe();
+    }
+
+    /**
+     * Removes all sessions which haven't been used for longer than the
+     * expiry time
+     */
+    public static void sweep() {
+        long now = System.nanoTime();
+        sessions.forEach((id, session) -> {
+            if (now - session.lastUsed > EXPIRY_NANOS) expire(id);
+        });
+    }
+
+    /**
+     * Returns the number of sessions currently held in memory
+     *
+     * @return the number of active sessions
+     */
+    public static int size() {
+        return sessions.size();
+    }
+
+}
@@ -0,0 +1,119 @@
+package com.redcreator37.WhitelistBot.Commands;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A lock-free token bucket rate limiter with a separate bucket per key.
+ * <p>
+ * Each bucket is stored as a single timestamp (the time at which the
+ * bucket would be full again), which is updated using compare-and-set.
+ * Buckets that have fully refilled carry no information and are removed
+ * by {@link RateLimiter#sweep()}, so idle keys don't take up memory.
+ *
+ * @param <K> the type of the keys (ex. guild or user snowflakes)
+ */
+public class RateLimiter<K> {
+
+    /**
+     * The time it takes for a single token to refill in nanoseconds
+     */
+    private final long refillNanos;
+
+    /**
+     * The time it takes for a full bucket to refill in nanoseconds
+     */
+    private final long capacityNanos;
+
+    /**
+     * The buckets, keyed by the limited key
+     */
+    private final Map<K, AtomicLong> buckets = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a new RateLimiter instance
+     *
+     * @param perMinute the number of tokens refilled per minute
+     * @param burst     the maximum number of tokens in a bucket
+     */
+    public RateLimiter(int perMinute, int burst) {
+        if (perMinute < 1 || burst < 1) throw new IllegalArgumentException();
+        this.refillNanos = TimeUnit.MINUTES.toNanos(1) / perMinute;
+        this.capacityNanos = refillNanos * burst;
+    }
+
+    /**
+     * Constructs a new RateLimiter instance, configured using the
+     * <code>bot.rateLimit.[name].perMinute</code> and
+     * <code>bot.rateLimit.[name].burst</code> system properties
+     *
+     * @param name             the name of the limiter in the properties
+     * @param defaultPerMinute the number of tokens refilled per minute
+     *                         if the property isn't set
+     * @param defaultBurst     the maximum number of tokens in a bucket
+     *                         if the property isn't set
+     * @param <K>              the type of the keys
+     * @return the configured rate limiter
+     */
+    public static <K> RateLimiter<K> fromProperties(String name, int defaultPerMinute, int defaultBurst) {
+        return new RateLimiter<>(Integer.getInteger("bot.rateLimit." + name + ".perMinute", defaultPerMinute),
+                Integer.getInteger("bot.rateLimit." + name + ".burst", defaultBurst));
+    }
+
+    /**
+     * Attempts to take a token from the bucket for this key
+     *
+     * @param key the key to take the token for
+     * @return <code>0</code> if a token was taken, otherwise the time
+     * in milliseconds until the next token is available
+     */
+    public long tryAcquire(K key) {
+        AtomicLong bucket = buckets.computeIfAbsent(key, k -> new AtomicLong(System.nanoTime()));
+        while (true) {
+            long now = System.nanoTime(), full = bucket.get();
+            // a full bucket starts draining from the current moment on
+            long next = (full - now < 0 ? now : full) + refillNanos;
+            if (next - now > capacityNanos)
+                return Math.max(1, TimeUnit.NANOSECONDS.toMillis(next - now - capacityNanos));
+            if (bucket.compareAndSet(full, next)) return 0;
+        }
+    }
+
+    /**
+     * Returns a token taken with {@link RateLimiter#tryAcquire(Object)}
+     * to the bucket for this key, used when the limited action doesn't
+     * run after all
+     *
+     * @param key the key to return the token for
+     */
+    public void release(K key) {
+        AtomicLong bucket = buckets.get(key);
+        if (bucket == null) return;
+        while (true) {
+            long now = System.nanoTime(), full = bucket.get();
+            if (full - now <= 0) return;    // already full
+            long next = full - refillNanos;
+            if (bucket.compareAndSet(full, next - now < 0 ? now : next)) return;
+        }
+    }
+
+    /**
+     * Removes all buckets which have fully refilled
+     */
+    public void sweep() {
+        long now = System.nanoTime();
+        buckets.values().removeIf(bucket -> bucket.get() - now <= 0);
+    }
+
+    /**
+     * Returns the number of buckets currently held in memory
+     *
+     * @return the number of tracked keys
+     */
+    public int size() {
+        return buckets.size();
+    }
+
+}
@@ -0,0 +1,155 @@
+package com.redcreator37.WhitelistBot.DataModels;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A Bloom filter of player identifiers, used to answer most lookups of
+ * players who aren't whitelisted without checking the exact whitelist.
+ * <p>
+ * The filter never returns false negatives: if it reports that an
+ * identifier might be present, the answer has to be confirmed, but if
+ * it reports that an identifier is absent, it's definitely absent.
+ * Identifiers can't be removed from the filter, so it has to be rebuilt
+ * once too many of its entries are stale.
+ * <p>
+ * All methods are thread-safe.
+ */
+public class BloomFilter {
+
+    /**
+     * The bits of the filter
+     */
+    private final AtomicLongArray bits;
+
+    /**
+     * The number of bits in the filter
+     */
+    private final long bitCount;
+
+    /**
+     * The number of bits set for each identifier
+     */
+    private final int hashCount;
+
+    /**
+     * The number of identifiers the filter was sized for
+     */
+    private final int capacity;
+
+    /**
+     * The false positive probability at full capacity
+     */
+    private final double targetFpp;
+
+    /**
+     * The number of identifiers added to the filter
+     */
+    private final AtomicInteger inserted = new AtomicInteger();
+
+    /**
+     * Constructs a new BloomFilter instance
+     *
+     * @param capacity  the number of identifiers the filter should hold
+     * @param targetFpp the false positive probability at full capacity,
+     *                  between <code>0</code> and <code>1</code>
+     */
+    public BloomFilter(int capacity, double targetFpp) {
+        this.capacity = Math.max(capacity, 64);
+        this.targetFpp = targetFpp;
+        long m = (long) Math.ceil(-this.capacity * Math.log(targetFpp) / (Math.log(2) * Math.log(2)));
+        this.bits = new AtomicLongArray((int) ((m + 63) / 64));
+        this.bitCount = bits.length() * 64L;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / this.capacity * Math.log(2)));
+    }
+
+    /**
+     * Adds this identifier to the filter
+     *
+     * @param identifier the identifier of the player
+     */
+    public void put(String identifier) {
+        long hash = hash(identifier);
+        int h1 = (int) hash, h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Integer.toUnsignedLong(h1 + i * h2) % bitCount;
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current;
+            do {
+                current = bits.get(word);
+                if ((current & mask) != 0) break;
+            } while (!bits.compareAndSet(word, current, current | mask));
+        }
+        inserted.incrementAndGet();
+    }
+
+    /**
+     * Checks whether this identifier might be in the filter
+     *
+     * @param identifier the identifier of the player
+     * @return <code>false</code> if the identifier is definitely not in
+     * the filter, <code>true</code> if it might be
+     */
+    public boolean mightContain(String identifier) {
+        long hash = hash(identifier);
+        int h1 = (int) hash, h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Integer.toUnsignedLong(h1 + i * h2) % bitCount;
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether more identifiers have been added than the filter
+     * was sized for
+     *
+     * @return <code>true</code> if the filter should be rebuilt with a
+     * larger capacity
+     */
+    public boolean isOverCapacity() {
+        return inserted.get() > capacity;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getInserted() {
+        return inserted.get();
+    }
+
+    public double getTargetFpp() {
+        return targetFpp;
+    }
+
+    /**
+     * Returns the number of bytes of heap used by the filter's bits
+     *
+     * @return the size of the filter in bytes
+     */
+    public long getHeapBytes() {
+        return bitCount / 8;
+    }
+
+    /**
+     * Calculates a 64-bit hash of this identifier (FNV-1a, followed by
+     * a final mixing step to spread the bits)
+     *
+     * @param identifier the identifier of the player
+     * @return the hash
+     */
+    private static long hash(String identifier) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < identifier.length(); i++) {
+            h ^= identifier.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h;
+    }
+
+}
@@ -0,0 +1,86 @@
+package com.redcreator37.WhitelistBot.DataModels;
+
+import java.util.Optional;
+
+/**
+ * The result of changing the whitelist status of a single player as
+ * part of a bulk change
+ */
+public class ChangeResult {
+
+    /**
+     * The possible outcomes of a change
+     */
+    public enum Outcome {
+        /**
+         * The change was written to the database
+         */
+        CHANGED,
+        /**
+         * The database already matched the change (ex. the player was
+         * already whitelisted)
+         */
+        UNCHANGED,
+        /**
+         * The database rejected the change
+         */
+        FAILED
+    }
+
+    /**
+     * The shared result of all successful changes
+     */
+    public static final ChangeResult CHANGED = new ChangeResult(Outcome.CHANGED, null);
+
+    /**
+     * The outcome of the change
+     */
+    private final Outcome outcome;
+
+    /**
+     * The reason why the change was skipped or the error message if it
+     * failed
+     */
+    private final String message;
+
+    /**
+     * Constructs a new ChangeResult instance
+     *
+     * @param outcome the outcome of the change
+     * @param message the reason why the change was skipped or the error
+     *                message, <code>null</code> on success
+     */
+    private ChangeResult(Outcome outcome, String message) {
+        this.outcome = outcome;
+        this.message = message;
+    }
+
+    /**
+     * Constructs the result of a change the database already matched
+     *
+     * @param reason the reason why the change was skipped
+     * @return the result
+     */
+    public static ChangeResult unchanged(String reason) {
+        return new ChangeResult(Outcome.UNCHANGED, reason);
+    }
+
+    /**
+     * Constructs the result of a change the database rejected
+     *
+     * @param error the error message
+     * @return the result
+     */
+    public static ChangeResult failed(String error) {
+        return new ChangeResult(Outcome.FAILED, error);
+    }
+
+    public Outcome getOutcome() {
+        return outcome;
+    }
+
+    public Optional<String> getMessage() {
+        return Optional.ofNullable(message);
+    }
+
+}
@@ -1,14 +1,33 @@
 package com.redcreator37.WhitelistBot.DataModels;
 
+import com.redcreator37.WhitelistBot.Database.DbExecutor;
+import com.redcreator37.WhitelistBot.Database.GameHandling.CircuitBreaker;
 import com.redcreator37.WhitelistBot.Database.GameHandling.FiveMDb;
 import com.redcreator37.WhitelistBot.Database.GameHandling.SharedDbProvider;
+import com.redcreator37.WhitelistBot.Localizations;
 import discord4j.common.util.Snowflake;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
 
+import java.io.IOException;
 import java.sql.SQLException;
+import java.text.MessageFormat;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
 
 /**
  * Represents exactly one Discord {@link discord4j.core.object.entity.Guild}
@@ -19,6 +38,32 @@ import java.util.Optional;
  */
 public class Guild {
 
+    /**
+     * The maximum number of players changed in a single database
+     * transaction by the bulk operations
+     */
+    private static final int BATCH_SIZE = Integer.getInteger("bot.db.batchSize", 500);
+
+    /**
+     * Retries transient database failures, up to <code>bot.db.retries</code>
+     * times
+     */
+    private static final Retry RETRY = Retry.backoff(Integer.getInteger("bot.db.retries", 2),
+            Duration.ofMillis(Integer.getInteger("bot.db.retryBackoffMillis", 200)))
+            .maxBackoff(Duration.ofSeconds(2))
+            .jitter(0.5)
+            .filter(CircuitBreaker::isRetryable)
+            .onRetryExhaustedThrow((spec, signal) -> signal.failure());
+
+    /**
+     * A database action, run for a chunk of players, returning the
+     * update count of each player
+     */
+    @FunctionalInterface
+    private interface ChunkAction {
+        int[] apply(List<WhitelistedPlayer> players) throws SQLException;
+    }
+
     /**
      * This guild's unique snowflake
      */
@@ -33,22 +78,54 @@ public class Guild {
      * The role of the guild members required to retrieve / alter the
      * data for this guild
      */
-    private String adminRole;
+    private volatile String adminRole;
+
+    /**
+     * The language of the bot's responses in this guild
+     */
+    private volatile Locale locale = Localizations.DEFAULT_LOCALE;
 
     /**
      * The connection information for the shared database
      */
-    private SharedDbProvider sharedDbProvider;
+    private volatile SharedDbProvider sharedDbProvider;
 
     /**
      * The shared MySQL database with all game data
      */
-    private FiveMDb fiveMDb;
+    private volatile FiveMDb fiveMDb;
 
     /**
-     * A list of all whitelisted players in this guild
+     * The in-memory view of this guild's whitelist
      */
-    private List<WhitelistedPlayer> whitelisted;
+    private volatile WhitelistCache whitelist;
+
+    /**
+     * The summary of the whitelist table at the time of the last
+     * refresh
+     */
+    private volatile FiveMDb.Fingerprint whitelistFingerprint;
+
+    /**
+     * The connection attempt currently in progress
+     */
+    private final AtomicReference<Mono<Void>> connecting = new AtomicReference<>();
+
+    /**
+     * The whitelist changes waiting to be written in write-behind mode
+     */
+    private final WriteBehindQueue pendingWrites = new WriteBehindQueue();
+
+    /**
+     * The whitelist changes which couldn't be written because the
+     * database was unreachable, <code>null</code> until opened
+     */
+    private volatile MutationJournal journal;
+
+    /**
+     * Runs the commands for this guild one after another
+     */
+    private final GuildMailbox mailbox = new GuildMailbox();
 
     /**
      * Constructs a new Guild instance
@@ -90,47 +167,610 @@ public class Guild {
     /**
      * Connects to the shared game database, registered in this guild
      *
-     * @throws SQLException on errors
+     * @return an empty {@link Mono}, completed once connected or failing
+     * with the {@link SQLException} on errors
      */
-    public void connectSharedDb() throws SQLException {
-        fiveMDb = new FiveMDb(sharedDbProvider.connect());
-        whitelisted = fiveMDb.getWhitelistedPlayers();
+    public Mono<Void> connectSharedDb() {
+        return callDb(() -> {
+            fiveMDb = new FiveMDb(sharedDbProvider.connect());
+            whitelistFingerprint = fiveMDb.getWhitelistFingerprint();
+            WhitelistCache cache = new WhitelistCache(identifiers(fiveMDb.getWhitelistedPlayers()));
+            applyJournaled(cache);
+            whitelist = cache;
+            return null;
+        }).then();
+    }
+
+    /**
+     * Applies the journaled changes to this cache, so that they're shown
+     * as made until they're replayed
+     *
+     * @param cache the cache loaded from the database
+     */
+    private void applyJournaled(WhitelistCache cache) {
+        MutationJournal current = getJournal();
+        if (current != null) current.getPending().forEach(mutation -> {
+            if (mutation.isWhitelist()) cache.added(mutation.getPlayerId());
+            else cache.removed(mutation.getPlayerId());
+        });
+    }
+
+    /**
+     * Closes the connection pool of the shared game database and drops
+     * the cached whitelist, so that the database is connected to again
+     * on the next use
+     */
+    public void closeSharedDb() {
+        SharedDbProvider provider = sharedDbProvider;
+        fiveMDb = null;
+        whitelist = null;
+        whitelistFingerprint = null;
+        connecting.set(null);
+        if (provider != null) provider.close();
+    }
+
+    /**
+     * Connects to the shared game database unless it's already
+     * connected or being connected to. Concurrent callers share the
+     * same connection attempt, and a failed attempt is retried on the
+     * next call.
+     *
+     * @return an empty {@link Mono}, completed once connected or failing
+     * with the {@link SQLException} on errors
+     */
+    public Mono<Void> ensureConnected() {
+        return Mono.defer(() -> {
+            if (whitelist != null || sharedDbProvider == null) return Mono.empty();
+            Mono<Void> pending = connecting.get();
+            if (pending != null) return pending;
+            Mono<Void> attempt = connectSharedDb()
+                    .doOnError(e -> connecting.set(null))
+                    .cache();
+            return connecting.compareAndSet(null, attempt) ? attempt : connecting.get();
+        });
+    }
+
+    /**
+     * Pulls the changes made to the whitelist outside of the bot (ex.
+     * in-game) into the cached whitelist.
+     * <p>
+     * Nothing is read if the table's row count, identifier range and
+     * identifier checksum haven't changed. Otherwise only the newly added players are read
+     * if the table has a timestamp column, falling back to comparing the
+     * whole table when players were removed as well. Should be run
+     * through the guild's {@link GuildMailbox} so that it doesn't
+     * overlap with the commands changing the whitelist.
+     *
+     * @param since the time of the last refresh
+     * @return <code>true</code> if the whitelist has changed
+     */
+    public Mono<Boolean> refreshWhitelist(Instant since) {
+        return callDb(() -> {
+            FiveMDb db = fiveMDb;
+            WhitelistCache cache = whitelist;
+            if (db == null || cache == null) return false;
+            FiveMDb.Fingerprint fingerprint = db.getWhitelistFingerprint();
+            if (fingerprint.equals(whitelistFingerprint)) return false;
+            Optional<List<String>> added = db.getWhitelistedSince(since);
+            added.ifPresent(ids -> ids.forEach(cache::added));
+            PlayerIdSet players = cache.getPlayers();
+            // the size of cold caches is unknown, so they're always reloaded, and a
+            // changed fingerprint without new players means a player was replaced
+            if (!added.isPresent() || added.get().isEmpty() || players == null
+                    || players.size() != fingerprint.getCount()) {
+                List<String> current = identifiers(db.getWhitelistedPlayers());
+                if (players != null) {
+                    Set<String> currentSet = new HashSet<>(current);
+                    for (String id : players.toList())
+                        if (!currentSet.contains(id)) cache.removed(id);
+                    current.forEach(cache::added);
+                }
+                cache.rebuild(current);
+            } else maintainFilter(cache, db);
+            applyJournaled(cache);
+            whitelistFingerprint = fingerprint;
+            return true;
+        });
     }
 
     /**
      * Uses the connection to the in-game database to whitelist the
-     * player with this SteamID
+     * player with this SteamID. In write-behind mode, the player is
+     * only whitelisted in the cache and the change is queued. If the
+     * database can't be reached, the change is journaled.
      *
-     * @param playerId the SteamID of the player to whitelist
+     * @param playerId  the SteamID of the player to whitelist
+     * @param channelId the channel to report write-behind failures to
      * @return an empty {@link Optional} on success or the error
      * message
      */
-    public Optional<String> whitelistPlayer(String playerId) {
-        try {
-            fiveMDb.whitelistPlayer(new WhitelistedPlayer(playerId));
-            whitelisted.add(new WhitelistedPlayer(playerId));
-        } catch (SQLException e) {
-            return Optional.of(e.getMessage());
+    public Mono<Optional<String>> whitelistPlayer(String playerId, Snowflake channelId) {
+        WhitelistCache cache = whitelist;
+        if (WriteBehindQueue.ENABLED && cache != null) {
+            cache.added(playerId);
+            pendingWrites.enqueue(playerId, true, channelId);
+            return Mono.just(Optional.empty());
         }
-        return Optional.empty();
+        return ensureConnected().then(callDb(() -> {
+            // not adding the player means a retried attempt was already committed
+            fiveMDb.whitelistPlayer(new WhitelistedPlayer(playerId));
+            whitelist.added(playerId);
+            maintainFilter(whitelist, fiveMDb);
+            discardJournaled(playerId);
+            return Optional.<String>empty();
+        })).onErrorResume(SQLException.class, e -> journalOrDescribe(playerId, true, channelId, e));
     }
 
     /**
      * Uses the connection to the in-game database to remove the player
-     * from its whitelist
+     * from its whitelist. In write-behind mode, the player is only
+     * removed from the cache and the change is queued. If the database
+     * can't be reached, the change is journaled.
      *
-     * @param playerId the SteamID of the player to un-whitelist
+     * @param playerId  the SteamID of the player to un-whitelist
+     * @param channelId the channel to report write-behind failures to
      * @return an empty {@link Optional} on success or the error
      * message
      */
-    public Optional<String> unlistPlayer(String playerId) {
-        try {
+    public Mono<Optional<String>> unlistPlayer(String playerId, Snowflake channelId) {
+        WhitelistCache cache = whitelist;
+        if (WriteBehindQueue.ENABLED && cache != null) {
+            cache.removed(playerId);
+            pendingWrites.enqueue(playerId, false, channelId);
+            return Mono.just(Optional.empty());
+        }
+        return ensureConnected().then(callDb(() -> {
             fiveMDb.removePlayer(new WhitelistedPlayer(playerId));
-            whitelisted.remove(new WhitelistedPlayer(playerId));
-        } catch (SQLException e) {
-            return Optional.of(e.getMessage());
+            whitelist.removed(playerId);
+            maintainFilter(whitelist, fiveMDb);
+            discardJournaled(playerId);
+            return Optional.<String>empty();
+        })).onErrorResume(SQLException.class, e -> journalOrDescribe(playerId, false, channelId, e));
+    }
+
+    /**
+     * Writes the queued write-behind changes to the database in batched
+     * transactions. Whitelisting skips the players which are already
+     * whitelisted, as the queue combines the commands of many members.
+     * The changes which the database rejects are reverted in the cache.
+     * While the database can't be reached, the changes are moved to the
+     * journal, or stay queued if journaling is disabled.
+     * Should be run through the guild's {@link GuildMailbox}.
+     *
+     * @return the failed changes along with their error messages
+     */
+    public Mono<Map<WriteBehindQueue.Mutation, String>> flushWrites() {
+        FiveMDb db = fiveMDb;
+        WhitelistCache cache = whitelist;
+        SharedDbProvider provider = sharedDbProvider;
+        if (db == null || cache == null || provider == null || pendingWrites.size() == 0)
+            return Mono.just(Collections.emptyMap());
+        if (provider.getCircuitBreaker().getState() != CircuitBreaker.State.CLOSED) {
+            if (!MutationJournal.ENABLED) return Mono.just(Collections.emptyMap());
+            return keepUnwritten(pendingWrites.drain())
+                    .thenReturn(Collections.<WriteBehindQueue.Mutation, String>emptyMap());
         }
-        return Optional.empty();
+        List<WriteBehindQueue.Mutation> batch = pendingWrites.drain();
+        List<List<WriteBehindQueue.Mutation>> chunks = new ArrayList<>();
+        chunks.addAll(chunk(batch.stream().filter(WriteBehindQueue.Mutation::isWhitelist)
+                .collect(Collectors.toList())));
+        chunks.addAll(chunk(batch.stream().filter(mutation -> !mutation.isWhitelist())
+                .collect(Collectors.toList())));
+        // kept across retries, so that the written chunks aren't written again
+        Set<WriteBehindQueue.Mutation> done = new HashSet<>();
+        Map<WriteBehindQueue.Mutation, String> failed = new LinkedHashMap<>();
+        return callDb(() -> {
+            for (List<WriteBehindQueue.Mutation> chunk : chunks) {
+                if (done.containsAll(chunk)) continue;
+                List<WhitelistedPlayer> players = chunk.stream().map(mutation ->
+                        new WhitelistedPlayer(mutation.getPlayerId())).collect(Collectors.toList());
+                try {
+                    if (chunk.get(0).isWhitelist()) db.whitelistPlayersIfAbsent(players);
+                    else db.removePlayers(players);
+                } catch (SQLException e) {
+                    if (CircuitBreaker.isConnectionFailure(e)) throw e;   // the rest is kept below
+                    for (WriteBehindQueue.Mutation mutation : chunk) {
+                        revert(cache, mutation);
+                        failed.put(mutation, describe(e));
+                    }
+                }
+                done.addAll(chunk);
+            }
+            maintainFilter(cache, db);
+            return failed;
+        }).onErrorResume(SQLException.class, e -> {
+            List<WriteBehindQueue.Mutation> unwritten = batch.stream()
+                    .filter(mutation -> !done.contains(mutation)).collect(Collectors.toList());
+            if (CircuitBreaker.isConnectionFailure(e)) return keepUnwritten(unwritten).thenReturn(failed);
+            for (WriteBehindQueue.Mutation mutation : unwritten) {
+                revert(cache, mutation);
+                failed.put(mutation, describe(e));
+            }
+            return Mono.just(failed);
+        }).flatMap(result -> journal == null ? Mono.just(result) : Mono.fromRunnable(() -> done.stream()
+                .filter(mutation -> !failed.containsKey(mutation))
+                .forEach(mutation -> discardJournaled(mutation.getPlayerId())))
+                .subscribeOn(Schedulers.boundedElastic()).thenReturn(result));
+    }
+
+    /**
+     * Splits these changes into chunks of at most {@link Guild#BATCH_SIZE}
+     * changes
+     *
+     * @param mutations the changes to split
+     * @return the chunks
+     */
+    private static List<List<WriteBehindQueue.Mutation>> chunk(List<WriteBehindQueue.Mutation> mutations) {
+        List<List<WriteBehindQueue.Mutation>> chunks = new ArrayList<>();
+        for (int i = 0; i < mutations.size(); i += BATCH_SIZE)
+            chunks.add(mutations.subList(i, Math.min(i + BATCH_SIZE, mutations.size())));
+        return chunks;
+    }
+
+    /**
+     * Reverts this change in the cache after the database rejected it
+     *
+     * @param cache    the cache to revert the change in
+     * @param mutation the rejected change
+     */
+    private static void revert(WhitelistCache cache, WriteBehindQueue.Mutation mutation) {
+        if (mutation.isWhitelist()) cache.removed(mutation.getPlayerId());
+        else cache.added(mutation.getPlayerId());
+    }
+
+    /**
+     * Writes the journaled changes to the database in chunks of at most
+     * {@link Guild#BATCH_SIZE} players. Whitelisting skips the players
+     * which are already whitelisted, so a chunk which was written before
+     * a crash can be written again. The changes which the database
+     * rejects are dropped from the journal and reverted in the cache,
+     * while a connection failure leaves the remaining changes in the
+     * journal. Should be run through the guild's {@link GuildMailbox}.
+     *
+     * @return the rejected changes along with their error messages
+     */
+    public Mono<Map<WriteBehindQueue.Mutation, String>> replayJournal() {
+        MutationJournal current = journal;
+        FiveMDb db = fiveMDb;
+        WhitelistCache cache = whitelist;
+        SharedDbProvider provider = sharedDbProvider;
+        if (current == null || current.getDepth() == 0 || db == null || cache == null || provider == null
+                || provider.getCircuitBreaker().getState() != CircuitBreaker.State.CLOSED)
+            return Mono.just(Collections.emptyMap());
+        return callDb(() -> {
+            Map<WriteBehindQueue.Mutation, String> failed = new LinkedHashMap<>();
+            List<WriteBehindQueue.Mutation> entries = current.getPending();
+            try {
+                replayChunks(db, cache, current, entries, failed);
+            } finally {
+                current.compactAcknowledged();
+            }
+            maintainFilter(cache, db);
+            return failed;
+        });
+    }
+
+    /**
+     * Writes these journaled changes in chunks, acknowledging each
+     * chunk once it's written or rejected
+     *
+     * @param db      the database to write the changes to
+     * @param cache   the cache to revert the rejected changes in
+     * @param current the journal the changes belong to
+     * @param entries the changes to write
+     * @param failed  the map to put the rejected changes in
+     * @throws SQLException if the connection fails, leaving the rest
+     *                      of the changes in the journal
+     */
+    private void replayChunks(FiveMDb db, WhitelistCache cache, MutationJournal current,
+                              List<WriteBehindQueue.Mutation> entries,
+                              Map<WriteBehindQueue.Mutation, String> failed) throws SQLException {
+        for (int i = 0; i < entries.size(); i += BATCH_SIZE) {
+            List<WriteBehindQueue.Mutation> chunk = entries.subList(i, Math.min(i + BATCH_SIZE, entries.size()));
+            List<WhitelistedPlayer> added = new ArrayList<>(), removed = new ArrayList<>();
+            chunk.forEach(mutation -> (mutation.isWhitelist() ? added : removed)
+                    .add(new WhitelistedPlayer(mutation.getPlayerId())));
+            try {
+                if (!added.isEmpty()) db.whitelistPlayersIfAbsent(added);
+                if (!removed.isEmpty()) db.removePlayers(removed);
+            } catch (SQLException e) {
+                if (CircuitBreaker.isConnectionFailure(e)) throw e;
+                for (WriteBehindQueue.Mutation mutation : chunk) {
+                    revert(cache, mutation);
+                    failed.put(mutation, describe(e));
+                }
+            }
+            current.acknowledge(chunk);
+        }
+    }
+
+    /**
+     * Journals this change if it failed because the database couldn't
+     * be reached, applying it to the cache as if it was written. The
+     * change is journaled even if the cache hasn't been loaded yet.
+     *
+     * @param playerId  the SteamID of the player
+     * @param add       <code>true</code> if the player is whitelisted,
+     *                  <code>false</code> if they're removed
+     * @param channelId the channel in which the change was requested
+     * @param e         the error which occurred
+     * @return an empty {@link Optional} if the change was journaled or
+     * the error message, emitted once written to the journal
+     */
+    private Mono<Optional<String>> journalOrDescribe(String playerId, boolean add, Snowflake channelId,
+                                                     SQLException e) {
+        if (!MutationJournal.ENABLED || !CircuitBreaker.isConnectionFailure(e))
+            return Mono.just(Optional.of(describe(e)));
+        // opening and appending to the journal blocks on disk I/O
+        return Mono.fromCallable(() -> {
+            MutationJournal current = getJournal();
+            if (current == null) return Optional.of(describe(e));
+            try {
+                current.append(playerId, add, channelId);
+            } catch (IOException io) {
+                System.err.println(MessageFormat.format(Localizations.lc("journal-append-failed"),
+                        snowflake.asString(), io.getMessage()));
+                return Optional.of(describe(e));
+            }
+            // a cache loaded later applies the change when it's loaded
+            WhitelistCache cache = whitelist;
+            if (cache != null && add) cache.added(playerId);
+            else if (cache != null) cache.removed(playerId);
+            return Optional.<String>empty();
+        }).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Keeps these changes which couldn't be written, moving them to the
+     * journal or back to the write-behind queue if they can't be
+     * journaled
+     *
+     * @param mutations the unwritten changes
+     * @return an empty {@link Mono}, completed once the changes are kept
+     */
+    private Mono<Void> keepUnwritten(List<WriteBehindQueue.Mutation> mutations) {
+        // opening and appending to the journal blocks on disk I/O
+        return Mono.<Void>fromRunnable(() -> {
+            MutationJournal current = getJournal();
+            if (current != null) try {
+                current.append(mutations);
+                return;
+            } catch (IOException e) {
+                System.err.println(MessageFormat.format(Localizations.lc("journal-append-failed"),
+                        snowflake.asString(), e.getMessage()));
+            }
+            pendingWrites.requeue(mutations);
+        }).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Drops the journaled change of this player, which has been
+     * overridden by a change written to the database
+     *
+     * @param playerId the SteamID of the player
+     */
+    private void discardJournaled(String playerId) {
+        MutationJournal current = journal;
+        if (current == null) return;
+        try {
+            current.discard(playerId);
+        } catch (IOException e) {
+            System.err.println(MessageFormat.format(Localizations.lc("journal-append-failed"),
+                    snowflake.asString(), e.getMessage()));
+        }
+    }
+
+    /**
+     * Uses the connection to the in-game database to whitelist the
+     * players with these SteamIDs. The players are whitelisted in
+     * chunks, each in its own transaction, skipping the players which
+     * are already whitelisted.
+     *
+     * @param playerIds the SteamIDs of the players to whitelist
+     * @return the results for each of the players, in the same order
+     */
+    public Mono<Map<String, ChangeResult>> whitelistPlayers(List<String> playerIds) {
+        return applyInChunks(playerIds, "player-already-whitelisted", players -> {
+            int[] counts = fiveMDb.whitelistPlayersIfAbsent(players);
+            players.forEach(player -> whitelist.added(player.getIdentifier()));
+            return counts;
+        });
+    }
+
+    /**
+     * Uses the connection to the in-game database to remove the players
+     * with these SteamIDs from its whitelist. The players are removed
+     * in chunks, each in its own transaction.
+     *
+     * @param playerIds the SteamIDs of the players to un-whitelist
+     * @return the results for each of the players, in the same order
+     */
+    public Mono<Map<String, ChangeResult>> unlistPlayers(List<String> playerIds) {
+        return applyInChunks(playerIds, "player-not-whitelisted", players -> {
+            int[] counts = fiveMDb.removePlayers(players);
+            players.forEach(player -> whitelist.removed(player.getIdentifier()));
+            return counts;
+        });
+    }
+
+    /**
+     * Splits these SteamIDs into chunks of at most
+     * {@link Guild#BATCH_SIZE} players and runs the action for each of
+     * them. A failed chunk doesn't prevent the following ones from
+     * running.
+     *
+     * @param playerIds    the SteamIDs of the players
+     * @param unchangedKey the localization key of the reason shown for
+     *                     the players the database already matched
+     * @param action       the database action to run for each chunk
+     * @return the results for each of the players
+     */
+    private Mono<Map<String, ChangeResult>> applyInChunks(List<String> playerIds, String unchangedKey,
+                                                          ChunkAction action) {
+        if (playerIds.isEmpty()) return Mono.just(new LinkedHashMap<>());
+        return callDb(() -> {
+            Map<String, ChangeResult> results = new LinkedHashMap<>();
+            ChangeResult unchanged = ChangeResult.unchanged(Localizations.lc(locale, unchangedKey));
+            for (int i = 0; i < playerIds.size(); i += BATCH_SIZE) {
+                List<String> chunk = playerIds.subList(i, Math.min(i + BATCH_SIZE, playerIds.size()));
+                try {
+                    int[] counts = action.apply(chunk.stream().map(WhitelistedPlayer::new)
+                            .collect(Collectors.toList()));
+                    // SUCCESS_NO_INFO (-2) counts as a change
+                    for (int j = 0; j < chunk.size(); j++)
+                        results.put(chunk.get(j), j < counts.length && counts[j] == 0
+                                ? unchanged : ChangeResult.CHANGED);
+                } catch (SQLException e) {
+                    ChangeResult result = ChangeResult.failed(describe(e));
+                    for (String id : chunk) results.put(id, result);
+                }
+            }
+            maintainFilter(whitelist, fiveMDb);
+            return results;
+        });
+    }
+
+    /**
+     * Runs this call against the shared game database through its
+     * {@link CircuitBreaker}, retrying transient failures with a
+     * jittered exponential backoff
+     *
+     * @param callable the database call to run
+     * @param <T>      the type of the returned value
+     * @return a {@link Mono} emitting the returned value or failing with
+     * the last {@link SQLException}
+     */
+    private <T> Mono<T> callDb(DbExecutor.SqlCallable<T> callable) {
+        SharedDbProvider provider = sharedDbProvider;
+        Mono<T> call = provider != null ? provider.getCircuitBreaker().call(callable)
+                : DbExecutor.call(callable);
+        return call.retryWhen(RETRY);
+    }
+
+    /**
+     * Returns the message to show for this database error, replacing
+     * connection failures with a localized message
+     *
+     * @param e the error which occurred
+     * @return the message to show
+     */
+    private String describe(SQLException e) {
+        return CircuitBreaker.isConnectionFailure(e) ? Localizations.lc(locale, "db-unavailable-description")
+                : e.getMessage();
+    }
+
+    /**
+     * Rebuilds the cache's {@link BloomFilter} if it has degraded too
+     * much, reading the whitelist from the database if the cache is
+     * cold
+     *
+     * @param cache the cache to check
+     * @param db    the database to read cold whitelists from
+     * @throws SQLException on errors
+     */
+    private static void maintainFilter(WhitelistCache cache, FiveMDb db) throws SQLException {
+        if (!cache.needsRebuild()) return;
+        if (cache.isCold()) cache.rebuild(identifiers(db.getWhitelistedPlayers()));
+        else cache.rebuild();
+    }
+
+    /**
+     * Returns the identifiers of these players
+     *
+     * @param players the list of players
+     * @return the list of their identifiers
+     */
+    private static List<String> identifiers(List<WhitelistedPlayer> players) {
+        return players.stream().map(WhitelistedPlayer::getIdentifier).collect(Collectors.toList());
+    }
+
+    /**
+     * Checks whether the player with this SteamID is whitelisted,
+     * confirming the possible matches against the database when the
+     * whitelist is kept cold
+     *
+     * @param playerId the SteamID of the player
+     * @return <code>true</code> if the player is whitelisted
+     */
+    public Mono<Boolean> isWhitelisted(String playerId) {
+        WhitelistCache cache = whitelist;
+        if (cache == null) return Mono.just(false);
+        Optional<Boolean> local = cache.lookup(playerId);
+        if (local.isPresent()) return Mono.just(local.get());
+        return callDb(() -> fiveMDb.isWhitelisted(new WhitelistedPlayer(playerId)))
+                .doOnNext(cache::recordConfirmation);
+    }
+
+    /**
+     * Checks whether the player with this SteamID is whitelisted,
+     * taking the journaled changes into account. While the database
+     * can't be reached, the answer is left open if the change can be
+     * journaled instead.
+     *
+     * @param playerId the SteamID of the player
+     * @return the answer or an empty {@link Optional} if it's unknown
+     */
+    public Mono<Optional<Boolean>> checkWhitelisted(String playerId) {
+        return openJournal().flatMap(current -> {
+            Optional<Boolean> journaled = current.lookup(playerId);
+            if (journaled.isPresent()) return Mono.just(journaled);
+            if (whitelist == null) return Mono.just(Optional.<Boolean>empty());   // not loaded yet
+            return isWhitelisted(playerId).map(Optional::of)
+                    .onErrorResume(CircuitBreaker::isConnectionFailure, e -> Mono.just(Optional.empty()));
+        }).switchIfEmpty(Mono.defer(() -> isWhitelisted(playerId).map(Optional::of)));
+    }
+
+    /**
+     * Finds the whitelisted players whose SteamID starts with this
+     * prefix
+     *
+     * @param prefix the start of the SteamIDs
+     * @param limit  the maximum number of players to return
+     * @return the matching SteamIDs
+     */
+    public Mono<List<String>> findWhitelisted(String prefix, int limit) {
+        PlayerIdSet players = getWhitelisted();
+        if (players != null) return Mono.just(players.findByPrefix(prefix, limit));
+        return callDb(() -> fiveMDb.findByPrefix(prefix, limit));
+    }
+
+    /**
+     * Counts the whitelisted players whose SteamID starts with this
+     * prefix
+     *
+     * @param prefix the start of the SteamIDs
+     * @return the number of matching players
+     */
+    public Mono<Integer> countWhitelisted(String prefix) {
+        PlayerIdSet players = getWhitelisted();
+        if (players != null) return Mono.just(players.countByPrefix(prefix));
+        return callDb(() -> fiveMDb.countByPrefix(prefix));
+    }
+
+    /**
+     * Retrieves a page of whitelisted player identifiers, sorted by the
+     * identifier
+     *
+     * @param after the last identifier of the previous page or an
+     *              empty string for the first page
+     * @param limit the maximum number of identifiers to return
+     * @return the identifiers on the page
+     */
+    public Mono<List<String>> getWhitelistedPage(String after, int limit) {
+        return callDb(() -> fiveMDb.getWhitelistedPage(after, limit));
+    }
+
+    /**
+     * Checks whether the player with this SteamID is whitelisted in
+     * this guild, without querying the database
+     *
+     * @param playerId the SteamID of the player
+     * @return the answer or an empty {@link Optional} if it can't be
+     * answered without querying the database
+     */
+    public Optional<Boolean> isWhitelistedLocally(String playerId) {
+        WhitelistCache cache = whitelist;
+        return cache != null ? cache.lookup(playerId) : Optional.empty();
     }
 
     public Snowflake getSnowflake() {
@@ -145,20 +785,134 @@ public class Guild {
         return adminRole;
     }
 
+    public Locale getLocale() {
+        return locale;
+    }
+
     public SharedDbProvider getSharedDbProvider() {
         return sharedDbProvider;
     }
 
-    public List<WhitelistedPlayer> getWhitelisted() {
-        return whitelisted;
+    /**
+     * Returns the exact set of whitelisted players
+     *
+     * @return the set or <code>null</code> if the database isn't
+     * connected or the whitelist is kept cold
+     */
+    public PlayerIdSet getWhitelisted() {
+        WhitelistCache cache = whitelist;
+        return cache != null ? cache.getPlayers() : null;
+    }
+
+    public WhitelistCache getWhitelistCache() {
+        return whitelist;
+    }
+
+    public GuildMailbox getMailbox() {
+        return mailbox;
+    }
+
+    public WriteBehindQueue getPendingWrites() {
+        return pendingWrites;
+    }
+
+    /**
+     * Returns the journal of the changes which couldn't be written,
+     * opening it on first use. Opening the journal blocks on disk I/O,
+     * so {@link Guild#openJournal()} should be used on the event
+     * threads instead.
+     *
+     * @return the {@link MutationJournal} or <code>null</code> if
+     * journaling is disabled or the journal can't be opened
+     */
+    public MutationJournal getJournal() {
+        if (!MutationJournal.ENABLED) return null;
+        MutationJournal current = journal;
+        if (current != null) return current;
+        synchronized (this) {
+            if (journal == null) try {
+                journal = MutationJournal.open(snowflake);
+            } catch (IOException e) {
+                System.err.println(MessageFormat.format(Localizations.lc("journal-open-failed"),
+                        snowflake.asString(), e.getMessage()));
+            }
+            return journal;
+        }
+    }
+
+    /**
+     * Returns the journal of the changes which couldn't be written,
+     * opening it on a {@link Schedulers#boundedElastic()} thread on
+     * first use
+     *
+     * @return the {@link MutationJournal} or an empty {@link Mono} if
+     * journaling is disabled or the journal can't be opened
+     */
+    public Mono<MutationJournal> openJournal() {
+        MutationJournal current = journal;
+        if (current != null || !MutationJournal.ENABLED) return Mono.justOrEmpty(current);
+        return Mono.fromCallable(this::getJournal).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Deletes the journal along with its changes, used once the bot
+     * leaves the guild, so that they aren't replayed if the guild is
+     * registered again
+     */
+    public synchronized void deleteJournal() {
+        MutationJournal current = getJournal();
+        journal = null;
+        if (current == null) return;
+        try {
+            current.delete();
+        } catch (IOException e) {
+            System.err.println(MessageFormat.format(Localizations.lc("journal-delete-failed"),
+                    snowflake.asString(), e.getMessage()));
+        }
+    }
+
+    /**
+     * Checks whether this player's change is journaled and hasn't been
+     * written to the database yet
+     *
+     * @param playerId the SteamID of the player
+     * @return <code>true</code> if the change is journaled
+     */
+    public boolean isJournaled(String playerId) {
+        MutationJournal current = journal;
+        return current != null && current.isPending(playerId);
     }
 
     public void setAdminRole(String adminRole) {
         this.adminRole = adminRole;
     }
 
-    public void setSharedDbProvider(SharedDbProvider sharedDbProvider) {
+    public void setLocale(Locale locale) {
+        this.locale = locale;
+    }
+
+    /**
+     * Replaces the connection information for the shared database,
+     * closing the connections to the previous one. The queued and
+     * journaled changes which are still left are dropped, as they were
+     * meant for the previous database. Blocks until the previous
+     * connection pool is closed and the journal is deleted, so it should
+     * be run through the {@link DbExecutor} after flushing the changes.
+     *
+     * @param sharedDbProvider the new database data provider
+     * @return the SteamIDs of the players whose changes were dropped
+     */
+    public List<String> setSharedDbProvider(SharedDbProvider sharedDbProvider) {
+        Set<String> dropped = new LinkedHashSet<>();
+        MutationJournal current = getJournal();
+        if (current != null) {
+            current.getPending().forEach(mutation -> dropped.add(mutation.getPlayerId()));
+            deleteJournal();
+        }
+        pendingWrites.drain().forEach(mutation -> dropped.add(mutation.getPlayerId()));
+        closeSharedDb();
         this.sharedDbProvider = sharedDbProvider;
+        return new ArrayList<>(dropped);
     }
 
     @Override
@@ -170,12 +924,12 @@ public class Guild {
                 && joined.equals(guild.joined) && Objects.equals(adminRole, guild.adminRole)
                 && Objects.equals(sharedDbProvider, guild.sharedDbProvider)
                 && Objects.equals(fiveMDb, guild.fiveMDb)
-                && Objects.equals(whitelisted, guild.whitelisted);
+                && Objects.equals(whitelist, guild.whitelist);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(snowflake, joined, adminRole, sharedDbProvider, fiveMDb, whitelisted);
+        return Objects.hash(snowflake, joined, adminRole, sharedDbProvider, fiveMDb, whitelist);
     }
 
 }
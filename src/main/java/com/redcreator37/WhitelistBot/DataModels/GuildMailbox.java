@@ -0,0 +1,97 @@
+package com.redcreator37.WhitelistBot.DataModels;
+
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs the tasks submitted for a single {@link Guild} one after another,
+ * in the order they were submitted.
+ * <p>
+ * Tasks of different guilds run independently of each other. The
+ * mailbox doesn't use any locks and doesn't occupy a thread while
+ * waiting for a task to finish.
+ */
+public class GuildMailbox {
+
+    /**
+     * Tasks waiting for the currently running one to finish
+     */
+    private final Queue<Runnable> queue = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The number of pending drain requests
+     */
+    private final AtomicInteger wip = new AtomicInteger();
+
+    /**
+     * Whether a task is currently running
+     */
+    private volatile boolean active;
+
+    /**
+     * Queues the task for execution after all previously submitted tasks
+     * have finished
+     *
+     * @param task the supplier of the task's {@link Mono}, invoked once
+     *             it's the task's turn
+     * @param <T>  the type of the task's result
+     * @return a {@link Mono} emitting the task's result once it's finished
+     */
+    public <T> Mono<T> submit(Supplier<? extends Mono<T>> task) {
+        return Mono.create(sink -> {
+            AtomicBoolean cancelled = new AtomicBoolean();
+            sink.onCancel(() -> cancelled.set(true));
+            queue.offer(() -> {
+                if (cancelled.get()) complete();
+                else run(task, sink);
+            });
+            drain();
+        });
+    }
+
+    /**
+     * Subscribes to the task and relays its result to the sink
+     *
+     * @param task the supplier of the task's {@link Mono}
+     * @param sink the sink of the submitting subscriber
+     * @param <T>  the type of the task's result
+     */
+    private <T> void run(Supplier<? extends Mono<T>> task, MonoSink<T> sink) {
+        sink.onDispose(Mono.defer(task)
+                .doFinally(signal -> complete())
+                .subscribe(sink::success, sink::error, sink::success));
+    }
+
+    /**
+     * Marks the running task as finished and starts the next one
+     */
+    private void complete() {
+        active = false;
+        drain();
+    }
+
+    /**
+     * Starts the next task unless one is already running
+     */
+    private void drain() {
+        if (wip.getAndIncrement() != 0) return;
+        int missed = 1;
+        do {
+            if (!active) {
+                Runnable next = queue.poll();
+                if (next != null) {
+                    active = true;
+                    next.run();
+                }
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+}
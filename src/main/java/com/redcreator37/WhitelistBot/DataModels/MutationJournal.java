@@ -0,0 +1,492 @@
+package com.redcreator37.WhitelistBot.DataModels;
+
+import discord4j.common.util.Snowflake;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.redcreator37.WhitelistBot.Localizations.lc;
+
+/**
+ * The whitelist changes of a single guild which couldn't be written
+ * because the game database was unreachable, kept on disk until they're
+ * replayed.
+ * <p>
+ * The changes are appended to numbered segment files in the guild's
+ * journal directory, one line per change. The segments are synced to
+ * the disk once <code>bot.journal.syncEvery</code> changes are waiting
+ * or every <code>bot.journal.syncMillis</code> milliseconds, so a crash
+ * may lose the changes made since the last sync. A new segment is started once
+ * the current one reaches <code>bot.journal.segmentBytes</code>, and
+ * the segments are compacted into one containing only the last change
+ * of each player once there are too many of them or the changes have
+ * been replayed. Journaling is enabled with the <code>bot.journal</code>
+ * system property.
+ */
+public class MutationJournal implements AutoCloseable {
+
+    /**
+     * Whether the changes which fail because the database can't be
+     * reached are journaled
+     */
+    public static final boolean ENABLED = Boolean.getBoolean("bot.journal");
+
+    /**
+     * The directory containing the journal directories of all guilds
+     */
+    private static final Path ROOT = Paths.get(System.getProperty("bot.journal.dir", "journal"));
+
+    /**
+     * The size in bytes after which a new segment is started
+     */
+    private static final long SEGMENT_BYTES = Long.getLong("bot.journal.segmentBytes", 1024 * 1024);
+
+    /**
+     * The number of unsynced changes which triggers a sync
+     */
+    private static final int SYNC_EVERY = Integer.getInteger("bot.journal.syncEvery", 32);
+
+    /**
+     * The time between two scheduled syncs in milliseconds
+     */
+    public static final int SYNC_MILLIS = Integer.getInteger("bot.journal.syncMillis", 200);
+
+    /**
+     * The number of segments which triggers a compaction
+     */
+    private static final int COMPACT_SEGMENTS = Integer.getInteger("bot.journal.compactSegments", 4);
+
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    /**
+     * All open journals, synced and closed together
+     */
+    private static final Set<MutationJournal> journals = ConcurrentHashMap.newKeySet();
+
+    /**
+     * The directory of this guild's segments
+     */
+    private final Path dir;
+
+    /**
+     * The numbers of the segments on disk, in the order they were
+     * written
+     */
+    private final TreeSet<Long> segments = new TreeSet<>();
+
+    /**
+     * The last journaled change of each player which hasn't been
+     * replayed yet, in the order they were made
+     */
+    private final Map<String, WriteBehindQueue.Mutation> pending = new LinkedHashMap<>();
+
+    /**
+     * The segment changes are appended to, <code>null</code> until the
+     * first change after opening or compacting
+     */
+    private FileChannel segment = null;
+
+    private long segmentSize = 0;
+
+    private int unsynced = 0;
+
+    private boolean closed = false;
+
+    /**
+     * Whether changes have been replayed since the last compaction
+     */
+    private boolean acknowledged = false;
+
+    /**
+     * Constructs a new MutationJournal instance
+     *
+     * @param dir the directory of the guild's segments
+     */
+    private MutationJournal(Path dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * Opens the journal of this guild, reading the changes which were
+     * journaled before the bot was restarted
+     *
+     * @param guildId the ID of the guild
+     * @return the guild's {@link MutationJournal}
+     * @throws IOException if the segments can't be read
+     */
+    public static MutationJournal open(Snowflake guildId) throws IOException {
+        MutationJournal journal = new MutationJournal(ROOT.resolve(guildId.asString()));
+        journal.load();
+        journals.add(journal);
+        return journal;
+    }
+
+    /**
+     * Reads all complete changes from the segments on disk. A change
+     * torn by a crash is ignored, and new changes always go to a new
+     * segment.
+     *
+     * @throws IOException if the segments can't be read
+     */
+    private void load() throws IOException {
+        if (!Files.isDirectory(dir)) return;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    segments.add(Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    // not a segment
+                }
+            }
+        }
+        for (long number : segments) {
+            String content = new String(Files.readAllBytes(segmentPath(number)), StandardCharsets.UTF_8);
+            int end = content.lastIndexOf('\n');
+            if (end < 0) continue;
+            for (String line : content.substring(0, end).split("\n")) apply(line);
+        }
+    }
+
+    /**
+     * Applies this journaled line to the pending changes, skipping it
+     * if it's malformed
+     *
+     * @param line the line to apply
+     */
+    private void apply(String line) {
+        String[] parts = line.split(" ");
+        if (parts.length < 2) return;
+        if (parts[0].equals("C")) {
+            pending.remove(parts[1]);
+            return;
+        }
+        if (parts.length != 3 || !(parts[0].equals("W") || parts[0].equals("U"))) return;
+        Snowflake channelId;
+        try {
+            channelId = parts[2].equals("-") ? null : Snowflake.of(parts[2]);
+        } catch (NumberFormatException e) {
+            return;
+        }
+        pending.remove(parts[1]);   // keep the order of the last changes
+        pending.put(parts[1], new WriteBehindQueue.Mutation(parts[1], parts[0].equals("W"), channelId));
+    }
+
+    /**
+     * Journals these changes, replacing the pending changes of the same
+     * players
+     *
+     * @param mutations the changes to journal
+     * @throws IOException if the changes can't be written
+     */
+    public synchronized void append(Collection<WriteBehindQueue.Mutation> mutations) throws IOException {
+        write(format(mutations), mutations.size());
+        for (WriteBehindQueue.Mutation mutation : mutations) {
+            pending.remove(mutation.getPlayerId());
+            pending.put(mutation.getPlayerId(), mutation);
+        }
+        rotateIfFull();
+    }
+
+    /**
+     * Formats these changes as journal lines
+     *
+     * @param mutations the changes to format
+     * @return the lines, each ending with a line break
+     */
+    private static String format(Collection<WriteBehindQueue.Mutation> mutations) {
+        StringBuilder lines = new StringBuilder();
+        for (WriteBehindQueue.Mutation mutation : mutations)
+            lines.append(mutation.isWhitelist() ? 'W' : 'U').append(' ').append(mutation.getPlayerId())
+                    .append(' ').append(mutation.getChannelId() != null
+                    ? mutation.getChannelId().asString() : "-").append('\n');
+        return lines.toString();
+    }
+
+    /**
+     * Journals this change, replacing the pending change of the same
+     * player
+     *
+     * @param playerId  the SteamID of the player
+     * @param whitelist <code>true</code> if the player is whitelisted,
+     *                  <code>false</code> if they're removed
+     * @param channelId the channel in which the change was requested
+     * @throws IOException if the change can't be written
+     */
+    public void append(String playerId, boolean whitelist, Snowflake channelId) throws IOException {
+        List<WriteBehindQueue.Mutation> mutations = new ArrayList<>(1);
+        mutations.add(new WriteBehindQueue.Mutation(playerId, whitelist, channelId));
+        append(mutations);
+    }
+
+    /**
+     * Drops the pending change of this player, used once a newer change
+     * of the player has been written to the database directly
+     *
+     * @param playerId the SteamID of the player
+     * @throws IOException if the change can't be written
+     */
+    public synchronized void discard(String playerId) throws IOException {
+        if (!pending.containsKey(playerId)) return;
+        write("C " + playerId + "\n", 1);
+        pending.remove(playerId);
+        rotateIfFull();
+    }
+
+    /**
+     * Marks these changes as replayed, unless the players have been
+     * changed again in the meantime. They're removed from the disk by
+     * the next {@link MutationJournal#compactAcknowledged()} call.
+     *
+     * @param mutations the replayed changes
+     */
+    public synchronized void acknowledge(Collection<WriteBehindQueue.Mutation> mutations) {
+        for (WriteBehindQueue.Mutation mutation : mutations)
+            acknowledged |= pending.remove(mutation.getPlayerId(), mutation);
+    }
+
+    /**
+     * Compacts the journal if changes have been replayed since the last
+     * compaction, so that a replay rewrites the remaining changes only
+     * once
+     */
+    public synchronized void compactAcknowledged() {
+        if (!acknowledged || closed) return;
+        try {
+            compact();
+        } catch (IOException e) {
+            // the replayed changes stay on disk and are replayed again after a restart
+            System.err.println(MessageFormat.format(lc("journal-compaction-failed"),
+                    dir.toString(), e.getMessage()));
+        }
+    }
+
+    /**
+     * Appends these lines to the current segment, creating it first if
+     * needed
+     *
+     * @param lines   the lines to append
+     * @param changes the number of changes in the lines
+     * @throws IOException if the lines can't be written
+     */
+    private void write(String lines, int changes) throws IOException {
+        if (closed) throw new IOException("The journal " + dir + " has been closed");
+        if (segment == null) startSegment();
+        writeToSegment(lines);
+        unsynced += changes;
+        if (unsynced >= SYNC_EVERY) sync();
+    }
+
+    /**
+     * Closes the current segment once it's full, so that the next change
+     * starts a new one, and compacts the journal if there are too many
+     * segments. Only called once the pending changes are up to date.
+     *
+     * @throws IOException if the segments can't be written
+     */
+    private void rotateIfFull() throws IOException {
+        if (segment == null || segmentSize < SEGMENT_BYTES) return;
+        sync();
+        segment.close();
+        segment = null;
+        if (segments.size() >= COMPACT_SEGMENTS) compact();
+    }
+
+    /**
+     * Appends these lines to the current segment as they are
+     *
+     * @param lines the lines to append
+     * @throws IOException if the lines can't be written
+     */
+    private void writeToSegment(String lines) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(lines.getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) segmentSize += segment.write(buffer);
+    }
+
+    /**
+     * Creates the next segment and makes it the current one
+     *
+     * @throws IOException if the segment can't be created
+     */
+    private void startSegment() throws IOException {
+        Files.createDirectories(dir);
+        long number = segments.isEmpty() ? 1 : segments.last() + 1;
+        segment = FileChannel.open(segmentPath(number), StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        segments.add(number);
+        segmentSize = 0;
+    }
+
+    /**
+     * Replaces all segments with a single one containing the pending
+     * changes, or deletes them if there are none. The new segment is
+     * synced before the old ones are deleted, so a crash in between
+     * only leaves duplicate changes behind.
+     *
+     * @throws IOException if the segments can't be written or deleted
+     */
+    private void compact() throws IOException {
+        acknowledged = false;
+        if (segment != null) {
+            sync();
+            segment.close();
+            segment = null;
+        }
+        List<Long> old = new ArrayList<>(segments);
+        if (!pending.isEmpty()) {
+            startSegment();
+            writeToSegment(format(pending.values()));
+            segment.force(false);
+            unsynced = 0;
+        }
+        for (long number : old) {
+            Files.deleteIfExists(segmentPath(number));
+            segments.remove(number);
+        }
+    }
+
+    /**
+     * Syncs the changes appended to the current segment to the disk
+     *
+     * @throws IOException if the segment can't be synced
+     */
+    public synchronized void sync() throws IOException {
+        if (segment == null || unsynced == 0) return;
+        segment.force(false);
+        unsynced = 0;
+    }
+
+    /**
+     * Syncs all open journals, logging the failures
+     */
+    public static void syncAll() {
+        journals.forEach(journal -> {
+            try {
+                journal.sync();
+            } catch (IOException e) {
+                System.err.println(MessageFormat.format(lc("journal-sync-failed"),
+                        journal.dir.toString(), e.getMessage()));
+            }
+        });
+    }
+
+    /**
+     * Syncs and closes all open journals
+     */
+    public static void closeAll() {
+        journals.forEach(journal -> {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                System.err.println(MessageFormat.format(lc("journal-sync-failed"),
+                        journal.dir.toString(), e.getMessage()));
+            }
+        });
+    }
+
+    /**
+     * Syncs and closes the current segment. The pending changes stay on
+     * disk and are read again once the journal is reopened.
+     *
+     * @throws IOException if the segment can't be synced or closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        journals.remove(this);
+        if (segment == null) return;
+        try {
+            sync();
+        } finally {
+            segment.close();
+            segment = null;
+        }
+    }
+
+    /**
+     * Closes the journal and deletes its segments along with the
+     * guild's journal directory, dropping the pending changes
+     *
+     * @throws IOException if the segments can't be deleted
+     */
+    public synchronized void delete() throws IOException {
+        close();
+        pending.clear();
+        for (long number : new ArrayList<>(segments)) {
+            Files.deleteIfExists(segmentPath(number));
+            segments.remove(number);
+        }
+        if (Files.isDirectory(dir)) try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            if (!files.iterator().hasNext()) Files.delete(dir);
+        }
+    }
+
+    private Path segmentPath(long number) {
+        return dir.resolve(String.format("%08d", number) + SEGMENT_SUFFIX);
+    }
+
+    /**
+     * Returns the pending changes
+     *
+     * @return the changes in the order they were made
+     */
+    public synchronized List<WriteBehindQueue.Mutation> getPending() {
+        return new ArrayList<>(pending.values());
+    }
+
+    /**
+     * Checks whether this player has a pending change
+     *
+     * @param playerId the SteamID of the player
+     * @return <code>true</code> if the player's change hasn't been
+     * replayed yet
+     */
+    public synchronized boolean isPending(String playerId) {
+        return pending.containsKey(playerId);
+    }
+
+    /**
+     * Returns the pending change of this player
+     *
+     * @param playerId the SteamID of the player
+     * @return <code>true</code> if the player is to be whitelisted,
+     * <code>false</code> if they're to be removed or an empty
+     * {@link Optional} if the player has no pending change
+     */
+    public synchronized Optional<Boolean> lookup(String playerId) {
+        WriteBehindQueue.Mutation mutation = pending.get(playerId);
+        return mutation != null ? Optional.of(mutation.isWhitelist()) : Optional.empty();
+    }
+
+    /**
+     * Returns the number of players with a pending change
+     *
+     * @return the journal's depth
+     */
+    public synchronized int getDepth() {
+        return pending.size();
+    }
+
+    public synchronized int getSegments() {
+        return segments.size();
+    }
+
+}
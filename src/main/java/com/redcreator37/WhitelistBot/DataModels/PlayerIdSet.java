@@ -0,0 +1,400 @@
+package com.redcreator37.WhitelistBot.DataModels;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+/**
+ * A set of player identifiers, optimized for whitelists with many
+ * players.
+ * <p>
+ * Hex SteamIDs (ex. <code>steam:110000112345678</code>) are stored as
+ * primitive <code>long</code> values in an open-addressing hash table,
+ * which takes up a fraction of the memory needed for a {@link String}
+ * wrapped in a {@link WhitelistedPlayer} and a hash set node. Any other
+ * identifiers are kept as strings in a separate table.
+ * <p>
+ * A sorted index for prefix searches is built on the first search and
+ * kept up-to-date from then on, so sets which are never searched don't
+ * use the memory for it.
+ * <p>
+ * All methods are thread-safe.
+ */
+public class PlayerIdSet {
+
+    /**
+     * The prefix of all SteamID identifiers
+     */
+    private static final String STEAM_PREFIX = "steam:";
+
+    /**
+     * The maximum number of hex digits which fit into a positive
+     * <code>long</code> value
+     */
+    private static final int MAX_HEX_DIGITS = 15;
+
+    /**
+     * The value marking an empty slot in the table
+     */
+    private static final long EMPTY = 0;
+
+    /**
+     * The approximate heap usage of a single identifier stored as a
+     * {@link WhitelistedPlayer} in a {@link java.util.concurrent.ConcurrentHashMap}
+     * key set, excluding the characters (object headers, the string,
+     * its byte array, the map node and the table slot)
+     */
+    private static final int OBJECT_ENTRY_BYTES = 16 + 24 + 16 + 32 + 8;
+
+    /**
+     * The hash table of the encoded SteamIDs, its length is always a
+     * power of two
+     */
+    private long[] table = new long[16];
+
+    /**
+     * The number of values in the hash table
+     */
+    private int size = 0;
+
+    /**
+     * The encoded SteamIDs in ascending order, <code>null</code> until
+     * the first prefix search
+     */
+    private long[] sorted = null;
+
+    /**
+     * The number of values in the sorted index
+     */
+    private int sortedSize = 0;
+
+    /**
+     * Identifiers which can't be encoded as a <code>long</code> value,
+     * in ascending order
+     */
+    private final NavigableSet<String> others = new TreeSet<>();
+
+    /**
+     * Adds this identifier to the set
+     *
+     * @param identifier the identifier of the player
+     * @return <code>true</code> if the identifier wasn't present yet
+     */
+    public synchronized boolean add(String identifier) {
+        long encoded = encode(identifier);
+        if (encoded == EMPTY) return others.add(identifier);
+        if ((size + 1) * 4 > table.length * 3) resize(table.length * 2);
+        if (!insert(table, encoded)) return false;
+        if (sorted != null) indexAdd(encoded);
+        return true;
+    }
+
+    /**
+     * Removes this identifier from the set
+     *
+     * @param identifier the identifier of the player
+     * @return <code>true</code> if the identifier was present
+     */
+    public synchronized boolean remove(String identifier) {
+        long encoded = encode(identifier);
+        if (encoded == EMPTY) return others.remove(identifier);
+        int mask = table.length - 1, slot = find(encoded);
+        if (table[slot] == EMPTY) return false;
+        // shift the following entries back to keep the probe sequences
+        // unbroken
+        int next = slot;
+        while (true) {
+            next = (next + 1) & mask;
+            long value = table[next];
+            if (value == EMPTY) break;
+            int home = hash(value) & mask;
+            if (((next - home) & mask) >= ((next - slot) & mask)) {
+                table[slot] = value;
+                slot = next;
+            }
+        }
+        table[slot] = EMPTY;
+        size--;
+        if (sorted != null) indexRemove(encoded);
+        return true;
+    }
+
+    /**
+     * Checks whether this identifier is in the set
+     *
+     * @param identifier the identifier of the player
+     * @return <code>true</code> if the identifier is present
+     */
+    public synchronized boolean contains(String identifier) {
+        long encoded = encode(identifier);
+        if (encoded == EMPTY) return others.contains(identifier);
+        return table[find(encoded)] != EMPTY;
+    }
+
+    /**
+     * Returns the number of identifiers in the set
+     *
+     * @return the number of identifiers
+     */
+    public synchronized int size() {
+        return size + others.size();
+    }
+
+    /**
+     * Returns a snapshot of all identifiers in the set
+     *
+     * @return the {@link List} of identifiers, in no particular order
+     */
+    public synchronized List<String> toList() {
+        List<String> list = new ArrayList<>(size());
+        for (long value : table)
+            if (value != EMPTY) list.add(decode(value));
+        list.addAll(others);
+        return list;
+    }
+
+    /**
+     * Finds the identifiers starting with this prefix. Runs in
+     * logarithmic time for SteamIDs.
+     *
+     * @param prefix the start of the identifiers
+     * @param limit  the maximum number of identifiers to return
+     * @return the matching identifiers, sorted by their length and then
+     * alphabetically
+     */
+    public synchronized List<String> findByPrefix(String prefix, int limit) {
+        ensureIndex();
+        List<String> found = new ArrayList<>(Math.min(limit, 64));
+        for (long[] range : prefixRanges(prefix)) {
+            for (int i = lowerBound(range[0]); i < sortedSize && sorted[i] <= range[1]; i++) {
+                if (found.size() >= limit) return found;
+                found.add(decode(sorted[i]));
+            }
+        }
+        for (String identifier : others.tailSet(prefix, true)) {
+            if (found.size() >= limit || !identifier.startsWith(prefix)) break;
+            found.add(identifier);
+        }
+        return found;
+    }
+
+    /**
+     * Counts the identifiers starting with this prefix
+     *
+     * @param prefix the start of the identifiers
+     * @return the number of matching identifiers
+     */
+    public synchronized int countByPrefix(String prefix) {
+        ensureIndex();
+        int count = 0;
+        for (long[] range : prefixRanges(prefix))
+            count += lowerBound(range[1] + 1) - lowerBound(range[0]);
+        for (String identifier : others.tailSet(prefix, true)) {
+            if (!identifier.startsWith(prefix)) break;
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Returns the approximate number of bytes of heap used by this set
+     *
+     * @return the estimated heap usage in bytes
+     */
+    public synchronized long getHeapBytes() {
+        long bytes = 16 + (long) table.length * 8 + (sorted != null ? 16 + (long) sorted.length * 8 : 0);
+        for (String identifier : others)
+            bytes += OBJECT_ENTRY_BYTES - 16 + identifier.length();
+        return bytes;
+    }
+
+    /**
+     * Returns the approximate number of bytes of heap the identifiers
+     * in this set would use if they were stored as
+     * {@link WhitelistedPlayer} objects in a concurrent hash set
+     *
+     * @return the estimated heap usage in bytes
+     */
+    public synchronized long getObjectHeapBytes() {
+        // all encoded values have the maximum number of digits in practice
+        long bytes = (long) size * (OBJECT_ENTRY_BYTES + STEAM_PREFIX.length() + MAX_HEX_DIGITS);
+        for (String identifier : others)
+            bytes += OBJECT_ENTRY_BYTES + identifier.length();
+        return bytes;
+    }
+
+    /**
+     * Replaces the hash table with a new one of this length
+     *
+     * @param length the length of the new table, a power of two
+     */
+    private void resize(int length) {
+        long[] resized = new long[length];
+        for (long value : table)
+            if (value != EMPTY) insert(resized, value);
+        table = resized;
+    }
+
+    /**
+     * Builds the sorted index unless it's already present
+     */
+    private void ensureIndex() {
+        if (sorted != null) return;
+        long[] values = new long[Math.max(16, size)];
+        int n = 0;
+        for (long value : table)
+            if (value != EMPTY) values[n++] = value;
+        Arrays.sort(values, 0, n);
+        sorted = values;
+        sortedSize = n;
+    }
+
+    /**
+     * Adds this encoded value to the sorted index
+     *
+     * @param encoded the encoded identifier, not yet in the index
+     */
+    private void indexAdd(long encoded) {
+        int i = lowerBound(encoded);
+        if (sortedSize == sorted.length) sorted = Arrays.copyOf(sorted, sorted.length * 2);
+        System.arraycopy(sorted, i, sorted, i + 1, sortedSize - i);
+        sorted[i] = encoded;
+        sortedSize++;
+    }
+
+    /**
+     * Removes this encoded value from the sorted index
+     *
+     * @param encoded the encoded identifier, present in the index
+     */
+    private void indexRemove(long encoded) {
+        int i = lowerBound(encoded);
+        System.arraycopy(sorted, i + 1, sorted, i, sortedSize - i - 1);
+        sortedSize--;
+    }
+
+    /**
+     * Finds the first position in the sorted index with a value not
+     * lower than this one
+     *
+     * @param value the value to look for
+     * @return the index of the position
+     */
+    private int lowerBound(long value) {
+        int low = 0, high = sortedSize;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid] < value) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * Returns the ranges of encoded values whose identifiers start with
+     * this prefix. Identifiers of the same length are ordered the same
+     * way as their encoded values, so there is one range for each
+     * possible length.
+     *
+     * @param prefix the start of the identifiers
+     * @return the inclusive ranges, ordered by the length of their
+     * identifiers
+     */
+    private static List<long[]> prefixRanges(String prefix) {
+        List<long[]> ranges = new ArrayList<>();
+        if (STEAM_PREFIX.startsWith(prefix)) {
+            ranges.add(new long[]{1, Long.MAX_VALUE - 1});
+            return ranges;
+        }
+        long start = encode(prefix);
+        if (start == EMPTY) return ranges;
+        int digits = prefix.length() - STEAM_PREFIX.length();
+        for (int length = digits; length <= MAX_HEX_DIGITS; length++) {
+            int shift = 4 * (length - digits);
+            ranges.add(new long[]{start << shift, ((start + 1) << shift) - 1});
+        }
+        return ranges;
+    }
+
+    /**
+     * Inserts this encoded value into the table unless it's already
+     * present
+     *
+     * @param target  the table to insert into
+     * @param encoded the encoded identifier
+     * @return <code>true</code> if the value was inserted
+     */
+    private boolean insert(long[] target, long encoded) {
+        int mask = target.length - 1, slot = hash(encoded) & mask;
+        while (target[slot] != EMPTY) {
+            if (target[slot] == encoded) return false;
+            slot = (slot + 1) & mask;
+        }
+        target[slot] = encoded;
+        if (target == table) size++;
+        return true;
+    }
+
+    /**
+     * Finds the slot holding this encoded value
+     *
+     * @param encoded the encoded identifier
+     * @return the index of the value's slot or of the empty slot where
+     * it would be inserted
+     */
+    private int find(long encoded) {
+        int mask = table.length - 1, slot = hash(encoded) & mask;
+        while (table[slot] != EMPTY && table[slot] != encoded)
+            slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    /**
+     * Spreads the bits of this value for use as a table index
+     *
+     * @param value the encoded identifier
+     * @return the hash of the value
+     */
+    private static int hash(long value) {
+        long h = value * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * Encodes this identifier as a <code>long</code> value. Only
+     * lowercase hex SteamIDs without leading zeros are encoded, so
+     * that decoding them returns exactly the same identifier.
+     *
+     * @param identifier the identifier of the player
+     * @return the encoded value or {@link PlayerIdSet#EMPTY} if the
+     * identifier can't be encoded
+     */
+    private static long encode(String identifier) {
+        int length = identifier.length() - STEAM_PREFIX.length();
+        if (length < 1 || length > MAX_HEX_DIGITS || !identifier.startsWith(STEAM_PREFIX)
+                || identifier.charAt(STEAM_PREFIX.length()) == '0') return EMPTY;
+        long value = 0;
+        for (int i = STEAM_PREFIX.length(); i < identifier.length(); i++) {
+            char c = identifier.charAt(i);
+            int digit;
+            if (c >= '0' && c <= '9') digit = c - '0';
+            else if (c >= 'a' && c <= 'f') digit = c - 'a' + 10;
+            else return EMPTY;
+            value = value << 4 | digit;
+        }
+        return value;
+    }
+
+    /**
+     * Decodes this value back into the identifier
+     *
+     * @param value the encoded identifier
+     * @return the identifier of the player
+     */
+    private static String decode(long value) {
+        return STEAM_PREFIX + Long.toHexString(value);
+    }
+
+}
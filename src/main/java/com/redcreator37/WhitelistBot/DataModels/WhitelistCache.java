@@ -0,0 +1,206 @@
+package com.redcreator37.WhitelistBot.DataModels;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The in-memory view of a guild's whitelist.
+ * <p>
+ * Lookups first go through a {@link BloomFilter}, which answers most
+ * lookups of players who aren't whitelisted. The remaining ones are
+ * answered by the exact {@link PlayerIdSet}. Whitelists larger than the
+ * <code>bot.whitelist.coldThreshold</code> system property are kept
+ * <i>cold</i>: only the filter is held in memory and the possible
+ * matches have to be confirmed against the database.
+ */
+public class WhitelistCache {
+
+    /**
+     * The false positive probability the filters are sized for
+     */
+    private static final double TARGET_FPP = Double.parseDouble(System.getProperty("bot.bloom.fpp", "0.01"));
+
+    /**
+     * The number of players above which only the filter is kept in
+     * memory
+     */
+    private static final int COLD_THRESHOLD = Integer.getInteger("bot.whitelist.coldThreshold", Integer.MAX_VALUE);
+
+    /**
+     * The exact set of whitelisted players, <code>null</code> when cold
+     */
+    private final PlayerIdSet players;
+
+    private volatile BloomFilter filter;
+
+    /**
+     * The number of players removed since the filter was built, which
+     * the filter still reports as possibly present
+     */
+    private final AtomicInteger stale = new AtomicInteger();
+
+    /**
+     * Lookups answered by the filter alone
+     */
+    private final LongAdder negatives = new LongAdder();
+
+    /**
+     * Lookups which passed the filter, but weren't whitelisted
+     */
+    private final LongAdder falsePositives = new LongAdder();
+
+    /**
+     * Lookups which passed the filter and were whitelisted
+     */
+    private final LongAdder truePositives = new LongAdder();
+
+    /**
+     * Constructs a new WhitelistCache instance
+     *
+     * @param identifiers the identifiers of all whitelisted players
+     */
+    public WhitelistCache(Collection<String> identifiers) {
+        this.filter = buildFilter(identifiers);
+        if (identifiers.size() > COLD_THRESHOLD) this.players = null;
+        else {
+            this.players = new PlayerIdSet();
+            identifiers.forEach(players::add);
+        }
+    }
+
+    /**
+     * Checks whether the player with this identifier is whitelisted,
+     * using only the data in memory
+     *
+     * @param identifier the identifier of the player
+     * @return the answer or an empty {@link Optional} if it has to be
+     * confirmed using the database
+     */
+    public Optional<Boolean> lookup(String identifier) {
+        if (!filter.mightContain(identifier)) {
+            negatives.increment();
+            return Optional.of(false);
+        }
+        if (players == null) return Optional.empty();
+        boolean found = players.contains(identifier);
+        recordConfirmation(found);
+        return Optional.of(found);
+    }
+
+    /**
+     * Records the confirmed answer for an identifier which has passed
+     * the filter
+     *
+     * @param found whether the player is whitelisted
+     */
+    public void recordConfirmation(boolean found) {
+        if (found) truePositives.increment();
+        else falsePositives.increment();
+    }
+
+    /**
+     * Adds this identifier to the cache
+     *
+     * @param identifier the identifier of the player
+     */
+    public void added(String identifier) {
+        if (players != null && !players.add(identifier)) return;
+        filter.put(identifier);
+    }
+
+    /**
+     * Removes this identifier from the cache
+     *
+     * @param identifier the identifier of the player
+     */
+    public void removed(String identifier) {
+        if (players != null && !players.remove(identifier)) return;
+        stale.incrementAndGet();
+    }
+
+    /**
+     * Checks whether the filter has degraded enough to be rebuilt,
+     * either because too many of its entries were removed or because it
+     * holds more entries than it was sized for
+     *
+     * @return <code>true</code> if the filter should be rebuilt
+     */
+    public boolean needsRebuild() {
+        BloomFilter current = filter;
+        return current.isOverCapacity() || stale.get() > current.getCapacity() / 4;
+    }
+
+    /**
+     * Rebuilds the filter from the exact set of players
+     *
+     * @throws IllegalStateException if the cache is cold
+     */
+    public void rebuild() {
+        if (players == null) throw new IllegalStateException("cold caches have to be rebuilt from the database");
+        rebuild(players.toList());
+    }
+
+    /**
+     * Rebuilds the filter from these identifiers
+     *
+     * @param identifiers the identifiers of all whitelisted players
+     */
+    public void rebuild(Collection<String> identifiers) {
+        filter = buildFilter(identifiers);
+        stale.set(0);
+    }
+
+    /**
+     * Creates a new filter holding these identifiers, with room for
+     * the whitelist to double in size
+     *
+     * @param identifiers the identifiers of all whitelisted players
+     * @return the new filter
+     */
+    private static BloomFilter buildFilter(Collection<String> identifiers) {
+        BloomFilter built = new BloomFilter(identifiers.size() * 2, TARGET_FPP);
+        identifiers.forEach(built::put);
+        return built;
+    }
+
+    public boolean isCold() {
+        return players == null;
+    }
+
+    /**
+     * Returns the exact set of whitelisted players
+     *
+     * @return the set or <code>null</code> if the cache is cold
+     */
+    public PlayerIdSet getPlayers() {
+        return players;
+    }
+
+    public BloomFilter getFilter() {
+        return filter;
+    }
+
+    /**
+     * Returns the share of the lookups of players who aren't whitelisted
+     * that the filter couldn't answer
+     *
+     * @return the measured false positive rate, between <code>0</code>
+     * and <code>1</code>
+     */
+    public double getFalsePositiveRate() {
+        long fp = falsePositives.sum(), total = fp + negatives.sum();
+        return total == 0 ? 0 : (double) fp / total;
+    }
+
+    /**
+     * Returns the number of lookups done so far
+     *
+     * @return the number of lookups
+     */
+    public long getLookups() {
+        return negatives.sum() + falsePositives.sum() + truePositives.sum();
+    }
+
+}
@@ -1,7 +1,5 @@
 package com.redcreator37.WhitelistBot.DataModels;
 
-import java.util.Objects;
-
 /**
  * Represents a whitelisted player in the game database
  */
@@ -35,7 +33,7 @@ public class WhitelistedPlayer {
 
     @Override
     public int hashCode() {
-        return Objects.hash(identifier);
+        return identifier.hashCode();
     }
 
 }
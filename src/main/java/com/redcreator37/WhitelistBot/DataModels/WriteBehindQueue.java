@@ -0,0 +1,137 @@
+package com.redcreator37.WhitelistBot.DataModels;
+
+import discord4j.common.util.Snowflake;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The whitelist changes of a single guild which have already been
+ * applied to the cached whitelist, but not yet to the database.
+ * <p>
+ * Only the last change of each player is kept: whitelisting a player
+ * and then removing them (or the other way around) before the changes
+ * are written cancels both changes out. Write-behind mode is enabled
+ * with the <code>bot.writeBehind</code> system property.
+ */
+public class WriteBehindQueue {
+
+    /**
+     * A single queued whitelist change
+     */
+    public static final class Mutation {
+
+        private final String playerId;
+
+        /**
+         * <code>true</code> if the player is whitelisted, <code>false</code>
+         * if they're removed from the whitelist
+         */
+        private final boolean whitelist;
+
+        /**
+         * The channel in which the change was requested
+         */
+        private final Snowflake channelId;
+
+        Mutation(String playerId, boolean whitelist, Snowflake channelId) {
+            this.playerId = playerId;
+            this.whitelist = whitelist;
+            this.channelId = channelId;
+        }
+
+        public String getPlayerId() {
+            return playerId;
+        }
+
+        public boolean isWhitelist() {
+            return whitelist;
+        }
+
+        public Snowflake getChannelId() {
+            return channelId;
+        }
+
+    }
+
+    /**
+     * Whether the whitelist changes are written to the database in the
+     * background
+     */
+    public static final boolean ENABLED = Boolean.getBoolean("bot.writeBehind");
+
+    /**
+     * The number of queued changes which triggers writing them without
+     * waiting for the next scheduled flush
+     */
+    public static final int FLUSH_SIZE = Integer.getInteger("bot.writeBehind.flushSize", 100);
+
+    /**
+     * The queued changes, keyed by the player's SteamID, in the order
+     * they were made
+     */
+    private final Map<String, Mutation> pending = new LinkedHashMap<>();
+
+    /**
+     * The number of changes which were cancelled out before being
+     * written
+     */
+    private long coalesced = 0;
+
+    /**
+     * Queues this change, cancelling out the queued opposite change of
+     * the same player
+     *
+     * @param playerId  the SteamID of the player
+     * @param whitelist <code>true</code> if the player is whitelisted,
+     *                  <code>false</code> if they're removed
+     * @param channelId the channel in which the change was requested
+     */
+    public synchronized void enqueue(String playerId, boolean whitelist, Snowflake channelId) {
+        Mutation queued = pending.get(playerId);
+        if (queued != null && queued.whitelist != whitelist) {
+            pending.remove(playerId);
+            coalesced += 2;
+        } else pending.put(playerId, new Mutation(playerId, whitelist, channelId));
+    }
+
+    /**
+     * Removes all queued changes from the queue
+     *
+     * @return the changes in the order they were made
+     */
+    public synchronized List<Mutation> drain() {
+        List<Mutation> drained = new ArrayList<>(pending.values());
+        pending.clear();
+        return drained;
+    }
+
+    /**
+     * Puts these drained changes back in front of the queue, unless the
+     * player has been changed again in the meantime
+     *
+     * @param mutations the changes which couldn't be written
+     */
+    public synchronized void requeue(List<Mutation> mutations) {
+        Map<String, Mutation> restored = new LinkedHashMap<>();
+        mutations.forEach(mutation -> restored.put(mutation.playerId, mutation));
+        pending.forEach((id, mutation) -> {
+            Mutation older = restored.remove(id);
+            if (older == null || older.whitelist == mutation.whitelist) restored.put(id, mutation);
+            else coalesced += 2;   // the newer change undoes the unwritten one
+        });
+        pending.clear();
+        pending.putAll(restored);
+    }
+
+    public synchronized int size() {
+        return pending.size();
+    }
+
+    public synchronized long getCoalesced() {
+        return coalesced;
+    }
+
+}
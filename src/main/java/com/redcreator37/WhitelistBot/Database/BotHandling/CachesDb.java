@@ -1,12 +1,13 @@
 package com.redcreator37.WhitelistBot.Database.BotHandling;
 
 import com.redcreator37.WhitelistBot.DataModels.CacheState;
+import com.redcreator37.WhitelistBot.Database.StatementCache;
 import discord4j.common.util.Snowflake;
 
 import java.sql.Connection;
-import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.time.Instant;
 import java.util.HashMap;
 
@@ -18,6 +19,11 @@ public class CachesDb {
      */
     private final Connection con;
 
+    /**
+     * The prepared statements of the connection
+     */
+    private final StatementCache statements;
+
     /**
      * Constructs a new CachesDb instance
      *
@@ -25,6 +31,7 @@ public class CachesDb {
      */
     public CachesDb(Connection con) {
         this.con = con;
+        this.statements = StatementCache.of(con);
     }
 
     /**
@@ -35,13 +42,13 @@ public class CachesDb {
      */
     public HashMap<Snowflake, CacheState> getCacheState() throws SQLException {
         HashMap<Snowflake, CacheState> states = new HashMap<>();
-        ResultSet set = con.createStatement().executeQuery("select * from caches");
-        while (set.next()) {
-            Snowflake s = Snowflake.of(set.getString("guild_id"));
-            Instant i = Instant.parse(set.getString("last_refresh"));
-            states.put(s, new CacheState(s, i));
+        try (Statement st = con.createStatement(); ResultSet set = st.executeQuery("select * from caches")) {
+            while (set.next()) {
+                Snowflake s = Snowflake.of(set.getString("guild_id"));
+                Instant i = Instant.parse(set.getString("last_refresh"));
+                states.put(s, new CacheState(s, i));
+            }
         }
-        set.close();
         return states;
     }
 
@@ -55,12 +62,8 @@ public class CachesDb {
      * @see CachesDb#logRefresh(CacheState)
      */
     public void logFirstRefresh(Snowflake guildId) throws SQLException {
-        PreparedStatement st = con.prepareStatement("INSERT INTO" +
-                " caches(guild_id, last_refresh) VALUES(?, ?);");
-        st.closeOnCompletion();
-        st.setString(1, guildId.asString());
-        st.setString(2, Instant.now().toString());
-        st.executeUpdate();
+        statements.update("INSERT INTO caches(guild_id, last_refresh) VALUES(?, ?)",
+                guildId.asString(), Instant.now().toString());
     }
 
     /**
@@ -70,12 +73,8 @@ public class CachesDb {
      * @throws SQLException on errors
      */
     public void logRefresh(CacheState state) throws SQLException {
-        PreparedStatement st = con.prepareStatement("UPDATE caches SET"
-                + " last_refresh = ? WHERE guild_id = ?;");
-        st.closeOnCompletion();
-        st.setString(1, state.getLastRefresh().toString());
-        st.setString(2, state.getGuildId().asString());
-        st.executeUpdate();
+        statements.update("UPDATE caches SET last_refresh = ? WHERE guild_id = ?",
+                state.getLastRefresh().toString(), state.getGuildId().asString());
     }
 
     /**
@@ -86,10 +85,7 @@ public class CachesDb {
      * @throws SQLException on errors
      */
     public void clearCacheData(Snowflake guildId) throws SQLException {
-        PreparedStatement st = con.prepareStatement("DELETE FROM caches"
-                + " WHERE guild_id = ?;");
-        st.setString(1, guildId.asString());
-        st.executeUpdate();
+        statements.update("DELETE FROM caches WHERE guild_id = ?", guildId.asString());
     }
 
 }
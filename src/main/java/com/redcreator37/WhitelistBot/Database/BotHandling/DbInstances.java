@@ -1,10 +1,10 @@
 package com.redcreator37.WhitelistBot.Database.BotHandling;
 
 import com.redcreator37.WhitelistBot.Database.GameHandling.SharedDbProvider;
+import com.redcreator37.WhitelistBot.Database.StatementCache;
 import discord4j.common.util.Snowflake;
 
 import java.sql.Connection;
-import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 
@@ -14,7 +14,7 @@ public class DbInstances {
      * The SQLite database connection to use for all database-related
      * operations
      */
-    private final Connection con;
+    private final StatementCache statements;
 
     /**
      * Constructs a new DbInstances instance
@@ -22,54 +22,37 @@ public class DbInstances {
      * @param con connection to the SQLite database to use
      */
     public DbInstances(Connection con) {
-        this.con = con;
+        this.statements = StatementCache.of(con);
     }
 
     public SharedDbProvider getByGuild(Snowflake guildId) throws SQLException {
-        PreparedStatement st = con.prepareStatement("select * from db_instances"
-                + " where guild_id = ?");
-        st.closeOnCompletion();
-        st.setString(1, guildId.asString());
-        ResultSet set = st.executeQuery();
-        if (!set.next()) return null;
-        SharedDbProvider instance = new SharedDbProvider(guildId,
-                set.getString("server"),
-                set.getString("username"),
-                set.getString("password"),
-                set.getString("database"));
-        set.close();
-        return instance;
+        return statements.execute("select * from db_instances where guild_id = ?", st -> {
+            st.setString(1, guildId.asString());
+            try (ResultSet set = st.executeQuery()) {
+                if (!set.next()) return null;
+                return new SharedDbProvider(guildId,
+                        set.getString("server"),
+                        set.getString("username"),
+                        set.getString("password"),
+                        set.getString("database"));
+            }
+        });
     }
 
     public void registerInstance(SharedDbProvider provider) throws SQLException {
-        PreparedStatement st = con.prepareStatement("insert into db_instances(guild_id,"
-                + "server, username, password, database) values(?, ?, ?, ?, ?);");
-        st.closeOnCompletion();
-        st.setString(1, provider.getGuildId().asString());
-        st.setString(2, provider.getDbServer());
-        st.setString(3, provider.getUsername());
-        st.setString(4, provider.getPassword());
-        st.setString(5, provider.getDbName());
-        st.executeUpdate();
+        statements.update("insert into db_instances(guild_id, server, username, password, database)"
+                        + " values(?, ?, ?, ?, ?)", provider.getGuildId().asString(), provider.getDbServer(),
+                provider.getUsername(), provider.getPassword(), provider.getDbName());
     }
 
     public void updateInstance(SharedDbProvider provider) throws SQLException {
-        PreparedStatement st = con.prepareStatement("update db_instances set server = ?,"
-                + " username = ?, password = ?, database = ? where guild_id = ?;");
-        st.closeOnCompletion();
-        st.setString(1, provider.getDbServer());
-        st.setString(2, provider.getUsername());
-        st.setString(3, provider.getPassword());
-        st.setString(4, provider.getDbName());
-        st.setString(5, provider.getGuildId().asString());
-        st.executeUpdate();
+        statements.update("update db_instances set server = ?, username = ?, password = ?,"
+                        + " database = ? where guild_id = ?", provider.getDbServer(), provider.getUsername(),
+                provider.getPassword(), provider.getDbName(), provider.getGuildId().asString());
     }
 
     public void removeInstance(SharedDbProvider provider) throws SQLException {
-        PreparedStatement st = con.prepareStatement("delete from db_instances"
-                + " where guild_id = ?;");
-        st.setString(1, provider.getGuildId().asString());
-        st.executeUpdate();
+        statements.update("delete from db_instances where guild_id = ?", provider.getGuildId().asString());
     }
 
 }
@@ -1,12 +1,14 @@
 package com.redcreator37.WhitelistBot.Database.BotHandling;
 
 import com.redcreator37.WhitelistBot.DataModels.Guild;
+import com.redcreator37.WhitelistBot.Database.StatementCache;
+import com.redcreator37.WhitelistBot.Localizations;
 import discord4j.common.util.Snowflake;
 
 import java.sql.Connection;
-import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.time.Instant;
 import java.util.HashMap;
 
@@ -18,6 +20,11 @@ public class GuildsDb {
      */
     private final Connection con;
 
+    /**
+     * The prepared statements of the connection
+     */
+    private final StatementCache statements;
+
     /**
      * Constructs a new GuildsDb instance
      *
@@ -25,6 +32,7 @@ public class GuildsDb {
      */
     public GuildsDb(Connection con) {
         this.con = con;
+        this.statements = StatementCache.of(con);
     }
 
     /**
@@ -35,16 +43,19 @@ public class GuildsDb {
      */
     public HashMap<Snowflake, Guild> getGuilds() throws SQLException {
         HashMap<Snowflake, Guild> guilds = new HashMap<>();
-        ResultSet set = con.createStatement().executeQuery("select * from guilds");
         DbInstances dbInstances = new DbInstances(con);
-        while (set.next()) {
-            Snowflake s = Snowflake.of(set.getString("snowflake"));
-            Guild guild = new Guild(s, Instant.parse(set.getString("joined")),
-                    set.getString("admin_role"),
-                    dbInstances.getByGuild(s));
-            guilds.put(s, guild);
+        try (Statement st = con.createStatement(); ResultSet set = st.executeQuery("select * from guilds")) {
+            while (set.next()) {
+                Snowflake s = Snowflake.of(set.getString("snowflake"));
+                Guild guild = new Guild(s, Instant.parse(set.getString("joined")),
+                        set.getString("admin_role"),
+                        dbInstances.getByGuild(s));
+                String locale = set.getString("locale");
+                if (locale != null) guild.setLocale(Localizations.fromLangCode(locale)
+                        .orElse(Localizations.DEFAULT_LOCALE));
+                guilds.put(s, guild);
+            }
         }
-        set.close();
         return guilds;
     }
 
@@ -55,13 +66,8 @@ public class GuildsDb {
      * @throws SQLException on errors
      */
     public void addGuild(Guild guild) throws SQLException {
-        PreparedStatement st = con.prepareStatement("INSERT INTO"
-                + " guilds(snowflake, joined, admin_role) VALUES(?, ?, ?)");
-        st.closeOnCompletion();
-        st.setString(1, guild.getSnowflake().asString());
-        st.setString(2, guild.getJoined().toString());
-        st.setString(3, guild.getAdminRole());
-        st.executeUpdate();
+        statements.update("INSERT INTO guilds(snowflake, joined, admin_role) VALUES(?, ?, ?)",
+                guild.getSnowflake().asString(), guild.getJoined().toString(), guild.getAdminRole());
     }
 
     /**
@@ -71,11 +77,19 @@ public class GuildsDb {
      * @throws SQLException on errors
      */
     public void updateAdminRole(Guild guild) throws SQLException {
-        PreparedStatement st = con.prepareStatement("UPDATE guilds"
-                + " SET admin_role = ? WHERE snowflake = ?");
-        st.closeOnCompletion();
-        st.setString(1, guild.getAdminRole());
-        st.setString(2, guild.getSnowflake().asString());
+        statements.update("UPDATE guilds SET admin_role = ? WHERE snowflake = ?",
+                guild.getAdminRole(), guild.getSnowflake().asString());
+    }
+
+    /**
+     * Updates the language property for this {@link Guild}
+     *
+     * @param guild the {@link Guild} with the updated property
+     * @throws SQLException on errors
+     */
+    public void updateLocale(Guild guild) throws SQLException {
+        statements.update("UPDATE guilds SET locale = ? WHERE snowflake = ?",
+                guild.getLocale().toString(), guild.getSnowflake().asString());
     }
 
     /**
@@ -85,10 +99,7 @@ public class GuildsDb {
      * @throws SQLException on errors
      */
     public void removeGuild(Guild guild) throws SQLException {
-        PreparedStatement st = con.prepareStatement("DELETE FROM guilds"
-                + " WHERE snowflake = ?;");
-        st.setString(1, guild.getSnowflake().asString());
-        st.executeUpdate();
+        statements.update("DELETE FROM guilds WHERE snowflake = ?", guild.getSnowflake().asString());
     }
 
 }
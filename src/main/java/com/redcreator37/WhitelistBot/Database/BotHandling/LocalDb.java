@@ -6,7 +6,9 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 
 /**
  * Common database routines for the local datastore
@@ -40,9 +42,29 @@ public final class LocalDb {
         String line;
         while ((line = br.readLine()) != null)
             if (line.startsWith("--")) {
-                con.prepareStatement(builder.toString()).execute();
+                try (Statement st = con.createStatement()) {
+                    st.execute(builder.toString());
+                }
                 builder = new StringBuilder();
             } else builder.append(line).append(" ");
     }
 
+    /**
+     * Adds the columns introduced in newer versions to the tables of an
+     * existing database
+     *
+     * @param con database connection
+     * @throws SQLException on errors
+     */
+    public void upgradeDatabaseTables(Connection con) throws SQLException {
+        boolean hasLocale = false;
+        try (Statement st = con.createStatement()) {
+            try (ResultSet set = st.executeQuery("PRAGMA table_info(guilds)")) {
+                while (set.next())
+                    if (set.getString("name").equals("locale")) hasLocale = true;
+            }
+            if (!hasLocale) st.execute("ALTER TABLE guilds ADD COLUMN locale text default 'en_US'");
+        }
+    }
+
 }
@@ -0,0 +1,264 @@
+package com.redcreator37.WhitelistBot.Database;
+
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.sql.SQLException;
+import java.text.MessageFormat;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.redcreator37.WhitelistBot.Localizations.lc;
+
+/**
+ * Runs blocking JDBC calls on a dedicated, bounded {@link Scheduler} so
+ * that slow databases never stall the Discord gateway threads.
+ * <p>
+ * The number of threads and the maximum number of queued calls can be
+ * configured using the <code>bot.db.threads</code> and
+ * <code>bot.db.queueLimit</code> system properties.
+ * <p>
+ * When running on Java 21 or newer with the <code>bot.db.virtualThreads</code>
+ * system property set to <code>true</code>, each call runs on its own
+ * virtual thread instead, so that calls waiting for slow databases
+ * don't hold up a platform thread. The number of calls is then only
+ * limited by <code>bot.db.virtualThreads.maxPending</code>. Note that
+ * on Java 21 a virtual thread blocking inside a <code>synchronized</code>
+ * block (as the JDBC drivers do) keeps its carrier thread occupied, so
+ * the gain comes mostly from calls waiting for a pooled connection.
+ */
+public final class DbExecutor {
+
+    /**
+     * A database call which returns a value
+     *
+     * @param <T> the type of the returned value
+     */
+    @FunctionalInterface
+    public interface SqlCallable<T> {
+        T call() throws SQLException;
+    }
+
+    /**
+     * A database call which doesn't return anything
+     */
+    @FunctionalInterface
+    public interface SqlRunnable {
+        void run() throws SQLException;
+    }
+
+    /**
+     * The maximum number of concurrently running database calls
+     */
+    private static final int PARALLELISM = Integer.getInteger("bot.db.threads", 8);
+
+    /**
+     * The maximum number of database calls waiting for a free thread
+     */
+    private static final int QUEUE_LIMIT = Integer.getInteger("bot.db.queueLimit", 1000);
+
+    /**
+     * The maximum number of calls running or waiting at once when using
+     * virtual threads
+     */
+    private static final int MAX_PENDING_VIRTUAL = Integer.getInteger("bot.db.virtualThreads.maxPending", 10000);
+
+    /**
+     * The {@link Scheduler} on which all database calls are executed
+     */
+    private static final Scheduler scheduler;
+
+    /**
+     * Whether the calls run on virtual threads
+     */
+    private static final boolean virtual;
+
+    private static final AtomicInteger pending = new AtomicInteger();
+    private static final LongAdder completed = new LongAdder();
+    private static final LongAdder failed = new LongAdder();
+    private static final LongAdder rejected = new LongAdder();
+    private static final LongAdder queueNanos = new LongAdder();
+    private static final LongAdder executionNanos = new LongAdder();
+    private static final AtomicLong maxQueueNanos = new AtomicLong();
+    private static final AtomicLong maxExecutionNanos = new AtomicLong();
+
+    static {
+        ExecutorService executor = Boolean.getBoolean("bot.db.virtualThreads") ? newVirtualThreadExecutor() : null;
+        virtual = executor != null;
+        scheduler = virtual ? Schedulers.fromExecutorService(executor, "jdbc-virtual")
+                : Schedulers.newBoundedElastic(PARALLELISM, QUEUE_LIMIT, "jdbc", 60, true);
+    }
+
+    /**
+     * Non-instantiable
+     */
+    private DbExecutor() {
+    }
+
+    /**
+     * Creates an executor which starts a new virtual thread for each
+     * task. Looked up reflectively, so that the bot still runs on older
+     * Java versions.
+     *
+     * @return the executor or <code>null</code> if virtual threads aren't
+     * supported by the running JVM
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            ExecutorService executor = (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            System.out.println(lc("virtual-threads-enabled"));
+            return executor;
+        } catch (ReflectiveOperationException e) {
+            System.err.println(MessageFormat.format(lc("virtual-threads-unavailable"), e.toString()));
+            return null;
+        }
+    }
+
+    /**
+     * Wraps this database call into a {@link Mono}, which executes it
+     * on the database {@link Scheduler} once subscribed to
+     *
+     * @param callable the database call to execute
+     * @param <T>      the type of the returned value
+     * @return a {@link Mono} emitting the returned value, completing
+     * empty if the call returned <code>null</code> or failing with the
+     * thrown {@link SQLException}
+     */
+    public static <T> Mono<T> call(SqlCallable<T> callable) {
+        return Mono.defer(() -> {
+            long queued = System.nanoTime();
+            if (pending.incrementAndGet() > MAX_PENDING_VIRTUAL && virtual) {
+                pending.decrementAndGet();
+                rejected.increment();
+                return Mono.error(new RejectedExecutionException("Too many pending database calls"));
+            }
+            return Mono.fromCallable(() -> {
+                long started = System.nanoTime();
+                record(queueNanos, maxQueueNanos, started - queued);
+                try {
+                    T result = callable.call();
+                    completed.increment();
+                    return result;
+                } catch (SQLException e) {
+                    failed.increment();
+                    throw e;
+                } finally {
+                    record(executionNanos, maxExecutionNanos, System.nanoTime() - started);
+                }
+            }).subscribeOn(scheduler)
+                    .doOnError(RejectedExecutionException.class, e -> rejected.increment())
+                    .doFinally(signal -> pending.decrementAndGet());
+        });
+    }
+
+    /**
+     * Wraps this database call into a {@link Mono}, which executes it
+     * on the database {@link Scheduler} once subscribed to
+     *
+     * @param runnable the database call to execute
+     * @return an empty {@link Mono}, completed once the call finishes
+     */
+    public static Mono<Void> run(SqlRunnable runnable) {
+        return call(() -> {
+            runnable.run();
+            return null;
+        }).then();
+    }
+
+    /**
+     * Adds this duration to the total and updates the maximum value
+     *
+     * @param total   the total duration of all calls
+     * @param max     the longest duration so far
+     * @param elapsed the duration to record in nanoseconds
+     */
+    private static void record(LongAdder total, AtomicLong max, long elapsed) {
+        total.add(elapsed);
+        max.accumulateAndGet(elapsed, Math::max);
+    }
+
+    public static int getParallelism() {
+        return PARALLELISM;
+    }
+
+    public static int getQueueLimit() {
+        return virtual ? MAX_PENDING_VIRTUAL : QUEUE_LIMIT;
+    }
+
+    /**
+     * Checks whether the calls run on virtual threads
+     *
+     * @return <code>true</code> if each call runs on a virtual thread
+     */
+    public static boolean isVirtual() {
+        return virtual;
+    }
+
+    /**
+     * Returns the number of calls currently either waiting in the queue
+     * or being executed
+     *
+     * @return the number of pending calls
+     */
+    public static int getPending() {
+        return pending.get();
+    }
+
+    public static long getCompleted() {
+        return completed.sum();
+    }
+
+    public static long getFailed() {
+        return failed.sum();
+    }
+
+    public static long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * Returns the average time the calls have spent waiting for a free
+     * thread
+     *
+     * @return the average queue wait time in milliseconds
+     */
+    public static double getAverageQueueMillis() {
+        return averageMillis(queueNanos);
+    }
+
+    public static long getMaxQueueMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxQueueNanos.get());
+    }
+
+    /**
+     * Returns the average time the calls have spent executing
+     *
+     * @return the average execution time in milliseconds
+     */
+    public static double getAverageExecutionMillis() {
+        return averageMillis(executionNanos);
+    }
+
+    public static long getMaxExecutionMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxExecutionNanos.get());
+    }
+
+    /**
+     * Returns the average duration per finished call
+     *
+     * @param total the total duration of all calls in nanoseconds
+     * @return the average duration in milliseconds
+     */
+    private static double averageMillis(LongAdder total) {
+        long calls = completed.sum() + failed.sum();
+        return calls == 0 ? 0 : total.sum() / 1e6 / calls;
+    }
+
+}
@@ -0,0 +1,188 @@
+package com.redcreator37.WhitelistBot.Database.GameHandling;
+
+import com.redcreator37.WhitelistBot.Database.DbExecutor;
+import reactor.core.publisher.Mono;
+
+import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransactionRollbackException;
+import java.sql.SQLTransientException;
+import java.text.MessageFormat;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.redcreator37.WhitelistBot.Localizations.lc;
+
+/**
+ * Stops calling a database which can't be reached.
+ * <p>
+ * After a number of consecutive connection failures the circuit opens
+ * and all calls fail immediately with a {@link DatabaseUnavailableException}
+ * instead of each one waiting for the connection to time out. While the
+ * circuit is open, the database is probed in the background and the
+ * circuit closes again once a probe succeeds.
+ */
+public class CircuitBreaker {
+
+    /**
+     * The states of the circuit
+     */
+    public enum State {
+        /**
+         * Calls are let through
+         */
+        CLOSED,
+        /**
+         * Calls fail immediately, waiting for the next probe
+         */
+        OPEN,
+        /**
+         * Calls fail immediately while the database is being probed
+         */
+        PROBING
+    }
+
+    /**
+     * The number of consecutive failures which open the circuit
+     */
+    private static final int FAILURE_THRESHOLD = Integer.getInteger("bot.db.breaker.failures", 3);
+
+    /**
+     * The time between the probes while the circuit is open
+     */
+    private static final Duration PROBE_INTERVAL = Duration.ofSeconds(Integer
+            .getInteger("bot.db.breaker.probeSeconds", 30));
+
+    /**
+     * The name of the database, used in log messages
+     */
+    private final String name;
+
+    /**
+     * The call which checks whether the database is reachable again
+     */
+    private final DbExecutor.SqlRunnable probe;
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+
+    private final AtomicInteger failures = new AtomicInteger();
+
+    /**
+     * Incremented on each reset, so that the probes scheduled before
+     * the reset are discarded
+     */
+    private final AtomicInteger generation = new AtomicInteger();
+
+    /**
+     * Constructs a new CircuitBreaker instance
+     *
+     * @param name  the name of the database, used in log messages
+     * @param probe the call which checks whether the database is
+     *              reachable, throwing an exception if it isn't
+     */
+    public CircuitBreaker(String name, DbExecutor.SqlRunnable probe) {
+        this.name = name;
+        this.probe = probe;
+    }
+
+    /**
+     * Runs this database call unless the circuit is open, recording its
+     * outcome
+     *
+     * @param callable the database call to run
+     * @param <T>      the type of the returned value
+     * @return a {@link Mono} emitting the returned value, or failing with
+     * a {@link DatabaseUnavailableException} if the circuit is open
+     */
+    public <T> Mono<T> call(DbExecutor.SqlCallable<T> callable) {
+        return Mono.defer(() -> {
+            if (state.get() != State.CLOSED) return Mono.error(new DatabaseUnavailableException(name));
+            return DbExecutor.call(callable)
+                    .doOnSuccess(unused -> failures.set(0))
+                    .doOnError(e -> {
+                        if (isConnectionFailure(e)) recordFailure();
+                        else failures.set(0);   // the database has answered
+                    });
+        });
+    }
+
+    /**
+     * Records a connection failure, opening the circuit if there have
+     * been too many in a row
+     */
+    private void recordFailure() {
+        if (failures.incrementAndGet() < FAILURE_THRESHOLD
+                || !state.compareAndSet(State.CLOSED, State.OPEN)) return;
+        System.err.println(MessageFormat.format(lc("db-circuit-opened"), name,
+                PROBE_INTERVAL.getSeconds()));
+        scheduleProbe(generation.get());
+    }
+
+    /**
+     * Probes the database once the probe interval has passed, closing
+     * the circuit if the probe succeeds and scheduling the next one if
+     * it doesn't
+     *
+     * @param gen the generation the probe belongs to
+     */
+    private void scheduleProbe(int gen) {
+        Mono.delay(PROBE_INTERVAL)
+                .filter(unused -> generation.get() == gen && state.compareAndSet(State.OPEN, State.PROBING))
+                .flatMap(unused -> DbExecutor.run(probe)
+                        .then(Mono.fromRunnable(() -> {
+                            if (generation.get() != gen) return;
+                            failures.set(0);
+                            state.set(State.CLOSED);
+                            System.out.println(MessageFormat.format(lc("db-circuit-closed"), name));
+                        }))
+                        .onErrorResume(e -> Mono.fromRunnable(() -> {
+                            if (generation.get() != gen) return;
+                            state.set(State.OPEN);
+                            scheduleProbe(gen);
+                        })))
+                .subscribe();
+    }
+
+    /**
+     * Closes the circuit and stops probing, used when the database is
+     * disconnected
+     */
+    public void reset() {
+        generation.incrementAndGet();
+        failures.set(0);
+        state.set(State.CLOSED);
+    }
+
+    public State getState() {
+        return state.get();
+    }
+
+    /**
+     * Checks whether this error means the database couldn't be reached
+     * or didn't answer in time, as opposed to rejecting the query
+     *
+     * @param e the error to check
+     * @return <code>true</code> if the error is a connection failure
+     */
+    public static boolean isConnectionFailure(Throwable e) {
+        if (e instanceof SQLTransactionRollbackException) return false;
+        if (e instanceof SQLTransientException || e instanceof SQLRecoverableException) return true;
+        if (!(e instanceof SQLException)) return false;
+        String sqlState = ((SQLException) e).getSQLState();
+        return sqlState != null && sqlState.startsWith("08");
+    }
+
+    /**
+     * Checks whether the call which failed with this error may succeed
+     * if it's retried
+     *
+     * @param e the error to check
+     * @return <code>true</code> if the call should be retried
+     */
+    public static boolean isRetryable(Throwable e) {
+        return !(e instanceof DatabaseUnavailableException)
+                && (e instanceof SQLTransientException || isConnectionFailure(e));
+    }
+
+}
@@ -0,0 +1,20 @@
+package com.redcreator37.WhitelistBot.Database.GameHandling;
+
+import java.sql.SQLException;
+
+/**
+ * Thrown instead of calling the database while its
+ * {@link CircuitBreaker} is open
+ */
+public class DatabaseUnavailableException extends SQLException {
+
+    /**
+     * Constructs a new DatabaseUnavailableException instance
+     *
+     * @param name the name of the unavailable database
+     */
+    public DatabaseUnavailableException(String name) {
+        super("The database " + name + " is currently unavailable", "08000");
+    }
+
+}
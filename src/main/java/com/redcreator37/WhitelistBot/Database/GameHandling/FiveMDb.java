@@ -2,28 +2,91 @@ package com.redcreator37.WhitelistBot.Database.GameHandling;
 
 import com.redcreator37.WhitelistBot.DataModels.WhitelistedPlayer;
 
+import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
 
 public class FiveMDb {
 
     /**
-     * The SQLite database connection to use for all database-related
-     * operations
+     * A cheap summary of the whitelist table's contents, which changes
+     * whenever players are added or removed. Besides the row count and
+     * the identifier range it holds the XOR of the identifiers' CRC32
+     * checksums, so that replacing one player with another inside the
+     * range changes it as well. Only changes whose checksums cancel out
+     * exactly go unnoticed.
      */
-    private final Connection con;
+    public static final class Fingerprint {
+
+        private final long count;
+
+        private final String min;
+
+        private final String max;
+
+        private final long checksum;
+
+        private Fingerprint(long count, String min, String max, long checksum) {
+            this.count = count;
+            this.min = min;
+            this.max = max;
+            this.checksum = checksum;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Fingerprint)) return false;
+            Fingerprint that = (Fingerprint) o;
+            return count == that.count && checksum == that.checksum
+                    && Objects.equals(min, that.min) && Objects.equals(max, that.max);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(count, min, max, checksum);
+        }
+
+    }
+
+    /**
+     * The time after which a query is cancelled, in seconds
+     */
+    private static final int QUERY_TIMEOUT = Integer.getInteger("bot.db.queryTimeoutSeconds", 10);
+
+    /**
+     * The pooled MySQL data source, each operation borrows a connection
+     * from it and returns it once done
+     */
+    private final DataSource dataSource;
+
+    /**
+     * The name of the whitelist table's timestamp column, looked up on
+     * first use. Empty if the table doesn't have one.
+     */
+    private Optional<String> timestampColumn = null;
 
     /**
      * Constructs a new FiveMDb instance
      *
-     * @param connection the MySQL connection to use
+     * @param dataSource the pooled MySQL data source to use
      */
-    public FiveMDb(Connection connection) {
-        this.con = connection;
+    public FiveMDb(DataSource dataSource) {
+        this.dataSource = dataSource;
     }
 
     /**
@@ -34,24 +97,277 @@ public class FiveMDb {
      */
     public List<WhitelistedPlayer> getWhitelistedPlayers() throws SQLException {
         List<WhitelistedPlayer> players = new ArrayList<>();
-        ResultSet set = con.createStatement().executeQuery("select * from whitelist");
-        while (set.next())
-            players.add(new WhitelistedPlayer(set.getString("identifier")));
-        set.close();
+        try (Connection con = dataSource.getConnection(); Statement st = createStatement(con);
+             ResultSet set = st.executeQuery("select * from whitelist")) {
+            while (set.next())
+                players.add(new WhitelistedPlayer(set.getString("identifier")));
+        }
         return players;
     }
 
     /**
-     * Whitelists this player in the db
+     * Returns the row count, the lowest and highest identifier and the
+     * combined checksum of the identifiers of the whitelist table. Only
+     * reads the table's primary key index.
+     *
+     * @return the summary of the table
+     * @throws SQLException on errors
+     */
+    public Fingerprint getWhitelistFingerprint() throws SQLException {
+        try (Connection con = dataSource.getConnection(); Statement st = createStatement(con);
+             ResultSet set = st.executeQuery("SELECT COUNT(*), MIN(identifier),"
+                     + " MAX(identifier), BIT_XOR(CRC32(identifier)) FROM whitelist")) {
+            set.next();
+            return new Fingerprint(set.getLong(1), set.getString(2), set.getString(3), set.getLong(4));
+        }
+    }
+
+    /**
+     * Returns the identifiers of the players whitelisted after this
+     * time, if the whitelist table has a timestamp column
+     *
+     * @param since the time of the last refresh
+     * @return the identifiers of the newly whitelisted players or an
+     * empty {@link Optional} if the table has no timestamp column
+     * @throws SQLException on errors
+     */
+    public Optional<List<String>> getWhitelistedSince(Instant since) throws SQLException {
+        try (Connection con = dataSource.getConnection()) {
+            Optional<String> column = getTimestampColumn(con);
+            if (!column.isPresent()) return Optional.empty();
+            List<String> players = new ArrayList<>();
+            try (PreparedStatement st = prepare(con, "SELECT identifier FROM whitelist WHERE `"
+                    + column.get() + "` >= ?")) {
+                st.setTimestamp(1, Timestamp.from(since));
+                try (ResultSet set = st.executeQuery()) {
+                    while (set.next()) players.add(set.getString(1));
+                }
+            }
+            return Optional.of(players);
+        }
+    }
+
+    /**
+     * Finds the first timestamp column of the whitelist table
+     *
+     * @param con the connection to read the table's metadata with
+     * @return the name of the column or an empty {@link Optional} if
+     * there is none
+     * @throws SQLException on errors
+     */
+    private synchronized Optional<String> getTimestampColumn(Connection con) throws SQLException {
+        if (timestampColumn != null) return timestampColumn;
+        Optional<String> found = Optional.empty();
+        try (ResultSet set = con.getMetaData().getColumns(con.getCatalog(), null, "whitelist", null)) {
+            while (set.next() && !found.isPresent()) {
+                int type = set.getInt("DATA_TYPE");
+                if (type == Types.TIMESTAMP || type == Types.TIMESTAMP_WITH_TIMEZONE)
+                    found = Optional.of(set.getString("COLUMN_NAME"));
+            }
+        }
+        timestampColumn = found;
+        return found;
+    }
+
+    /**
+     * Checks whether this player is whitelisted in the db
+     *
+     * @param player the player to look for
+     * @return <code>true</code> if the player is whitelisted
+     * @throws SQLException on errors
+     */
+    public boolean isWhitelisted(WhitelistedPlayer player) throws SQLException {
+        try (Connection con = dataSource.getConnection();
+             PreparedStatement st = prepare(con, "SELECT 1 FROM whitelist WHERE identifier = ?")) {
+            st.setString(1, player.getIdentifier());
+            try (ResultSet set = st.executeQuery()) {
+                return set.next();
+            }
+        }
+    }
+
+    /**
+     * Returns the identifiers starting with this prefix, sorted by the
+     * identifier
+     *
+     * @param prefix the start of the identifiers
+     * @param limit  the maximum number of identifiers to return
+     * @return the matching identifiers
+     * @throws SQLException on errors
+     */
+    public List<String> findByPrefix(String prefix, int limit) throws SQLException {
+        List<String> found = new ArrayList<>(limit);
+        try (Connection con = dataSource.getConnection();
+             PreparedStatement st = prepare(con, "SELECT identifier FROM whitelist"
+                + " WHERE identifier LIKE ? ORDER BY identifier LIMIT ?")) {
+            st.setString(1, likePrefix(prefix));
+            st.setInt(2, limit);
+            try (ResultSet set = st.executeQuery()) {
+                while (set.next()) found.add(set.getString(1));
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Counts the identifiers starting with this prefix
+     *
+     * @param prefix the start of the identifiers
+     * @return the number of matching identifiers
+     * @throws SQLException on errors
+     */
+    public int countByPrefix(String prefix) throws SQLException {
+        try (Connection con = dataSource.getConnection();
+             PreparedStatement st = prepare(con, "SELECT COUNT(*) FROM whitelist"
+                + " WHERE identifier LIKE ?")) {
+            st.setString(1, likePrefix(prefix));
+            try (ResultSet set = st.executeQuery()) {
+                set.next();
+                return set.getInt(1);
+            }
+        }
+    }
+
+    /**
+     * Prepares this statement on the connection, limiting its execution
+     * time to {@link FiveMDb#QUERY_TIMEOUT}
+     *
+     * @param con the connection to prepare the statement on
+     * @param sql the SQL of the statement
+     * @return the prepared statement
+     * @throws SQLException on errors
+     */
+    private static PreparedStatement prepare(Connection con, String sql) throws SQLException {
+        PreparedStatement st = con.prepareStatement(sql);
+        st.setQueryTimeout(QUERY_TIMEOUT);
+        return st;
+    }
+
+    /**
+     * Creates a statement on the connection, limiting its execution
+     * time to {@link FiveMDb#QUERY_TIMEOUT}
+     *
+     * @param con the connection to create the statement on
+     * @return the statement
+     * @throws SQLException on errors
+     */
+    private static Statement createStatement(Connection con) throws SQLException {
+        Statement st = con.createStatement();
+        st.setQueryTimeout(QUERY_TIMEOUT);
+        return st;
+    }
+
+    /**
+     * Converts this prefix into a <code>LIKE</code> pattern, which can
+     * use the index on the identifier column
+     *
+     * @param prefix the start of the identifiers
+     * @return the pattern
+     */
+    private static String likePrefix(String prefix) {
+        return prefix.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+    }
+
+    /**
+     * Returns a page of whitelisted player identifiers, sorted by the
+     * identifier. The page starts after the given identifier, so
+     * retrieving any page only reads the rows it contains.
+     *
+     * @param after the last identifier of the previous page or an
+     *              empty string for the first page
+     * @param limit the maximum number of identifiers to return
+     * @return the identifiers on the page
+     * @throws SQLException on errors
+     */
+    public List<String> getWhitelistedPage(String after, int limit) throws SQLException {
+        List<String> page = new ArrayList<>(limit);
+        try (Connection con = dataSource.getConnection();
+             PreparedStatement st = prepare(con, "SELECT identifier FROM whitelist"
+                + " WHERE identifier > ? ORDER BY identifier LIMIT ?")) {
+            st.setString(1, after);
+            st.setInt(2, limit);
+            try (ResultSet set = st.executeQuery()) {
+                while (set.next()) page.add(set.getString(1));
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Whitelists this player in the db. Whitelisting a player who is
+     * already whitelisted changes nothing, so the call can be retried
+     * after a timeout even if the first attempt was committed.
      *
      * @param player the player to whitelist
+     * @return <code>true</code> if the player was added,
+     * <code>false</code> if they were already whitelisted
+     * @throws SQLException on errors
+     */
+    public boolean whitelistPlayer(WhitelistedPlayer player) throws SQLException {
+        try (Connection con = dataSource.getConnection();
+             PreparedStatement st = prepare(con, "INSERT IGNORE INTO whitelist(identifier) VALUES(?)")) {
+            st.setString(1, player.getIdentifier());
+            return st.executeUpdate() > 0;
+        }
+    }
+
+    /**
+     * Whitelists these players in the db using a single batch in one
+     * transaction, skipping the players which are already whitelisted,
+     * so that the same players can be whitelisted again safely
+     *
+     * @param players the players to whitelist
+     * @return the update count of each player, in the same order:
+     * <code>0</code> if they were already whitelisted
      * @throws SQLException on errors
      */
-    public void whitelistPlayer(WhitelistedPlayer player) throws SQLException {
-        PreparedStatement st = con.prepareStatement("INSERT INTO whitelist(identifier) VALUES(?)");
-        st.closeOnCompletion();
-        st.setString(1, player.getIdentifier());
-        st.executeUpdate();
+    public int[] whitelistPlayersIfAbsent(List<WhitelistedPlayer> players) throws SQLException {
+        return executeBatch("INSERT IGNORE INTO whitelist(identifier) VALUES(?)", players);
+    }
+
+    /**
+     * Removes these players from the whitelist in the db using a single
+     * batch in one transaction. If any of them fails, none of them are
+     * removed.
+     *
+     * @param players the players to remove
+     * @return the update count of each player, in the same order:
+     * <code>0</code> if they weren't whitelisted
+     * @throws SQLException on errors
+     */
+    public int[] removePlayers(List<WhitelistedPlayer> players) throws SQLException {
+        return executeBatch("DELETE FROM whitelist WHERE identifier = ?", players);
+    }
+
+    /**
+     * Executes this statement for each of these players as a batch in
+     * one transaction
+     *
+     * @param sql     the statement with the identifier as the only
+     *                parameter
+     * @param players the players to execute the statement for
+     * @return the update count of each player, in the same order
+     * @throws SQLException on errors, after rolling back the transaction
+     */
+    private int[] executeBatch(String sql, List<WhitelistedPlayer> players) throws SQLException {
+        try (Connection con = dataSource.getConnection()) {
+            boolean autoCommit = con.getAutoCommit();
+            con.setAutoCommit(false);
+            try (PreparedStatement st = prepare(con, sql)) {
+                for (WhitelistedPlayer player : players) {
+                    st.setString(1, player.getIdentifier());
+                    st.addBatch();
+                }
+                int[] counts = st.executeBatch();
+                con.commit();
+                return counts;
+            } catch (SQLException e) {
+                con.rollback();
+                throw e;
+            } finally {
+                con.setAutoCommit(autoCommit);
+            }
+        }
     }
 
     /**
@@ -61,10 +377,11 @@ public class FiveMDb {
      * @throws SQLException on errors
      */
     public void removePlayer(WhitelistedPlayer player) throws SQLException {
-        String sql = "DELETE FROM whitelist WHERE identifier = ?;";
-        PreparedStatement st = con.prepareStatement(sql);
-        st.setString(1, player.getIdentifier());
-        st.executeUpdate();
+        try (Connection con = dataSource.getConnection();
+             PreparedStatement st = prepare(con, "DELETE FROM whitelist WHERE identifier = ?")) {
+            st.setString(1, player.getIdentifier());
+            st.executeUpdate();
+        }
     }
 
 }
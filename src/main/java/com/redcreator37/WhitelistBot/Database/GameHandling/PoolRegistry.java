@@ -0,0 +1,252 @@
+package com.redcreator37.WhitelistBot.Database.GameHandling;
+
+import com.mysql.cj.jdbc.MysqlDataSource;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.pool.HikariPool;
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps one connection pool for each set of connection coordinates
+ * (server, username, password and database name), so that guilds which
+ * use the same database share a single pool.
+ * <p>
+ * The pools are reference-counted: each {@link SharedDbProvider} holds
+ * a reference to its pool while it's connected, and a pool is closed
+ * once the last provider using it releases it.
+ */
+public final class PoolRegistry {
+
+    /**
+     * The coordinates identifying a pool
+     */
+    private static final class Key {
+
+        private final String dbServer;
+
+        private final String username;
+
+        private final String password;
+
+        private final String dbName;
+
+        private Key(SharedDbProvider provider) {
+            this.dbServer = provider.getDbServer();
+            this.username = provider.getUsername();
+            this.password = provider.getPassword();
+            this.dbName = provider.getDbName();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return dbServer.equals(key.dbServer) && username.equals(key.username)
+                    && password.equals(key.password) && dbName.equals(key.dbName);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(dbServer, username, password, dbName);
+        }
+
+    }
+
+    /**
+     * A pool along with the number of providers using it
+     */
+    private static final class Entry {
+
+        private final HikariDataSource pool;
+
+        private int references = 0;
+
+        private Entry(HikariDataSource pool) {
+            this.pool = pool;
+        }
+
+    }
+
+    /**
+     * The time to wait for the database server to accept a connection
+     */
+    private static final int CONNECT_TIMEOUT = Integer.getInteger("bot.db.connectTimeoutMillis", 10000);
+
+    /**
+     * The time to wait for the database server to answer on an open
+     * connection
+     */
+    private static final int SOCKET_TIMEOUT = Integer.getInteger("bot.db.socketTimeoutMillis", 30000);
+
+    /**
+     * The number of idle connections each pool keeps open
+     */
+    private static final int MIN_IDLE = Integer.getInteger("bot.db.pool.minIdle", 1);
+
+    /**
+     * The maximum number of connections in each pool
+     */
+    private static final int MAX_SIZE = Integer.getInteger("bot.db.pool.maxSize", 4);
+
+    /**
+     * The time after which a connection is retired, should be shorter
+     * than the server's <code>wait_timeout</code>
+     */
+    private static final long MAX_LIFETIME = TimeUnit.MINUTES
+            .toMillis(Integer.getInteger("bot.db.pool.maxLifetimeMinutes", 30));
+
+    /**
+     * The time after which connections above the minimum are closed if
+     * they aren't used
+     */
+    private static final long IDLE_TIMEOUT = TimeUnit.MINUTES
+            .toMillis(Integer.getInteger("bot.db.pool.idleTimeoutMinutes", 10));
+
+    /**
+     * The interval at which idle connections are pinged to keep them
+     * from timing out
+     */
+    private static final long KEEPALIVE = TimeUnit.MINUTES
+            .toMillis(Integer.getInteger("bot.db.pool.keepaliveMinutes", 5));
+
+    /**
+     * The number of prepared statements cached for each connection
+     */
+    private static final int STATEMENT_CACHE_SIZE = Integer.getInteger("bot.db.statementCacheSize", 64);
+
+    /**
+     * The open pools, keyed by their coordinates
+     */
+    private static final Map<Key, Entry> pools = new HashMap<>();
+
+    /**
+     * Non-instantiable
+     */
+    private PoolRegistry() {
+    }
+
+    /**
+     * Returns the pool for this provider's coordinates, opening it if
+     * no other provider uses it yet. Each call has to be matched by a
+     * {@link PoolRegistry#release(SharedDbProvider)} call.
+     *
+     * @param provider the provider to get the pool for
+     * @return the shared pool
+     * @throws SQLException if the pool is opened and the first
+     *                      connection can't be established
+     */
+    static HikariDataSource acquire(SharedDbProvider provider) throws SQLException {
+        Key key = new Key(provider);
+        synchronized (PoolRegistry.class) {
+            Entry entry = pools.get(key);
+            if (entry != null) {
+                entry.references++;
+                return entry.pool;
+            }
+        }
+        // the first connection may take a while, so the pool is opened
+        // without holding the lock to not hold up other servers
+        HikariDataSource opened = open(provider);
+        Entry entry;
+        synchronized (PoolRegistry.class) {
+            entry = pools.computeIfAbsent(key, k -> new Entry(opened));
+            entry.references++;
+        }
+        // another guild opened the same pool in the meantime
+        if (entry.pool != opened) opened.close();
+        return entry.pool;
+    }
+
+    /**
+     * Releases this provider's reference to its pool and closes the pool
+     * if no other provider uses it
+     *
+     * @param provider the provider which no longer uses the pool
+     */
+    static void release(SharedDbProvider provider) {
+        HikariDataSource closed = null;
+        synchronized (PoolRegistry.class) {
+            Key key = new Key(provider);
+            Entry entry = pools.get(key);
+            if (entry == null) return;
+            if (--entry.references <= 0) {
+                pools.remove(key);
+                closed = entry.pool;
+            }
+        }
+        // closing waits for the borrowed connections, so it's done
+        // without holding the lock
+        if (closed != null) closed.close();
+    }
+
+    /**
+     * Returns the number of providers using the pool for this
+     * provider's coordinates
+     *
+     * @param provider the provider whose pool to look up
+     * @return the number of providers or <code>0</code> if the pool
+     * isn't open
+     */
+    static synchronized int getReferences(SharedDbProvider provider) {
+        Entry entry = pools.get(new Key(provider));
+        return entry == null ? 0 : entry.references;
+    }
+
+    /**
+     * Returns the number of pools currently open
+     *
+     * @return the number of pools
+     */
+    public static synchronized int size() {
+        return pools.size();
+    }
+
+    /**
+     * Opens a new pool using this provider's coordinates
+     *
+     * @param provider the provider whose coordinates to use
+     * @return the open pool
+     * @throws SQLException if the first connection can't be established
+     */
+    private static HikariDataSource open(SharedDbProvider provider) throws SQLException {
+        MysqlDataSource dataSource = new MysqlDataSource();
+        dataSource.setUser(provider.getUsername());
+        dataSource.setPassword(provider.getPassword());
+        dataSource.setServerName(provider.getDbServer());
+        dataSource.setDatabaseName(provider.getDbName());
+        // send batches as multi-row statements instead of one per row
+        dataSource.setRewriteBatchedStatements(true);
+        dataSource.setConnectTimeout(CONNECT_TIMEOUT);
+        // don't wait for the operating system to notice a dead server
+        dataSource.setSocketTimeout(SOCKET_TIMEOUT);
+        // prepare each query on the server once per connection and keep
+        // the prepared statements after they're closed
+        dataSource.setUseServerPrepStmts(true);
+        dataSource.setCachePrepStmts(true);
+        dataSource.setPrepStmtCacheSize(STATEMENT_CACHE_SIZE);
+        dataSource.setPrepStmtCacheSqlLimit(2048);
+        HikariConfig config = new HikariConfig();
+        config.setDataSource(dataSource);
+        config.setPoolName(provider.getDbServer() + "/" + provider.getDbName());
+        config.setAutoCommit(true);
+        config.setMinimumIdle(MIN_IDLE);
+        config.setMaximumPoolSize(Math.max(MAX_SIZE, MIN_IDLE));
+        config.setMaxLifetime(MAX_LIFETIME);
+        config.setIdleTimeout(IDLE_TIMEOUT);
+        config.setKeepaliveTime(KEEPALIVE);
+        config.setConnectionTimeout(CONNECT_TIMEOUT);
+        try {
+            return new HikariDataSource(config);
+        } catch (HikariPool.PoolInitializationException e) {
+            throw e.getCause() instanceof SQLException ? (SQLException) e.getCause()
+                    : new SQLException(e.getMessage(), e);
+        }
+    }
+
+}
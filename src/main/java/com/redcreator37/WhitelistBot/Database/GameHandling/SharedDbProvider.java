@@ -1,18 +1,85 @@
 package com.redcreator37.WhitelistBot.Database.GameHandling;
 
-import com.mysql.cj.jdbc.MysqlDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
 import discord4j.common.util.Snowflake;
 
+import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
 import java.util.Objects;
 import java.util.Optional;
 
 /**
- * Represents a MySQL database connection provider
+ * Represents a MySQL database connection provider.
+ * <p>
+ * Connections are borrowed from a pool, which is acquired from the
+ * {@link PoolRegistry} on the first {@link SharedDbProvider#connect()}
+ * call and shared with the other guilds using the same database. The
+ * pool keeps a minimum number of idle connections open, validates them
+ * before handing them out and replaces them in the background before
+ * the server closes them (ex. after MySQL's <code>wait_timeout</code>),
+ * so a dropped connection doesn't break the guild until the bot is
+ * restarted.
  */
 public class SharedDbProvider {
 
+    /**
+     * A snapshot of the connection pool's state
+     */
+    public static final class PoolStats {
+
+        private final int active;
+
+        private final int idle;
+
+        private final int total;
+
+        private final int waiting;
+
+        private final int sharedBy;
+
+        private PoolStats(int active, int idle, int total, int waiting, int sharedBy) {
+            this.active = active;
+            this.idle = idle;
+            this.total = total;
+            this.waiting = waiting;
+            this.sharedBy = sharedBy;
+        }
+
+        public int getActive() {
+            return active;
+        }
+
+        public int getIdle() {
+            return idle;
+        }
+
+        public int getTotal() {
+            return total;
+        }
+
+        /**
+         * Returns the number of threads waiting for a connection
+         *
+         * @return the number of waiting threads
+         */
+        public int getWaiting() {
+            return waiting;
+        }
+
+        /**
+         * Returns the number of guilds using the pool
+         *
+         * @return the number of guilds
+         */
+        public int getSharedBy() {
+            return sharedBy;
+        }
+
+    }
+
     private final Snowflake guildId;
 
     private final String dbServer;
@@ -23,7 +90,27 @@ public class SharedDbProvider {
 
     private final String dbName;
 
-    private Connection connection;
+    /**
+     * The time to wait for the database to answer a probe, in seconds
+     */
+    private static final int PROBE_TIMEOUT = Integer.getInteger("bot.db.breaker.probeTimeoutSeconds", 5);
+
+    /**
+     * Stops calling the database while it can't be reached
+     */
+    private final CircuitBreaker breaker;
+
+    /**
+     * The connection pool, shared with the other providers using the
+     * same database, <code>null</code> until connected
+     */
+    private HikariDataSource pool;
+
+    /**
+     * Whether the provider has been closed and not connected again
+     * since, in which case the probes must not acquire a new pool
+     */
+    private boolean closed = false;
 
     /**
      * Constructs a new shared database provider
@@ -40,24 +127,58 @@ public class SharedDbProvider {
         this.username = username;
         this.password = password;
         this.dbName = dbName;
+        this.breaker = new CircuitBreaker(dbServer + "/" + dbName, this::probe);
+    }
+
+    /**
+     * Acquires the connection pool to the database, bound to this
+     * provider instance, unless it's already acquired. Providers using
+     * the same database share the pool.
+     *
+     * @return the pooled {@link DataSource}
+     * @throws SQLException if the first connection can't be established
+     */
+    public synchronized DataSource connect() throws SQLException {
+        closed = false;
+        if (pool == null) pool = PoolRegistry.acquire(this);
+        return pool;
+    }
+
+    /**
+     * Releases the connection pool, closing it along with all of its
+     * connections unless other providers still use it
+     */
+    public synchronized void close() {
+        closed = true;
+        breaker.reset();
+        if (pool == null) return;
+        pool = null;
+        PoolRegistry.release(this);
     }
 
     /**
-     * Activates and connects to the database, bound to this provider
-     * instance
+     * Checks whether the database can be reached by borrowing a
+     * connection and validating it. A probe which runs after the
+     * provider has been closed fails instead of acquiring the pool
+     * again, which nothing would release.
      *
-     * @return the open database connection
-     * @throws SQLException on errors
+     * @throws SQLException if the database can't be reached or the
+     *                      provider has been closed
      */
-    public Connection connect() throws SQLException {
-        MysqlDataSource dataSource = new MysqlDataSource();
-        dataSource.setUser(username);
-        dataSource.setPassword(password);
-        dataSource.setServerName(dbServer);
-        dataSource.setDatabaseName(dbName);
-        connection = dataSource.getConnection();
-        connection.setAutoCommit(true);
-        return connection;
+    private void probe() throws SQLException {
+        DataSource source;
+        synchronized (this) {
+            if (closed) throw new SQLTransientConnectionException("The provider has been closed", "08003");
+            source = connect();
+        }
+        try (Connection con = source.getConnection()) {
+            if (!con.isValid(PROBE_TIMEOUT))
+                throw new SQLTransientConnectionException("Connection validation failed", "08000");
+        }
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return breaker;
     }
 
     public Snowflake getGuildId() {
@@ -80,8 +201,19 @@ public class SharedDbProvider {
         return dbName;
     }
 
-    public Optional<Connection> getConnection() {
-        return Optional.ofNullable(connection);
+    /**
+     * Returns the current state of the connection pool
+     *
+     * @return the {@link PoolStats} or an empty {@link Optional} if the
+     * pool isn't open
+     */
+    public synchronized Optional<PoolStats> getPoolStats() {
+        if (pool == null || pool.isClosed()) return Optional.empty();
+        HikariPoolMXBean bean = pool.getHikariPoolMXBean();
+        if (bean == null) return Optional.empty();
+        return Optional.of(new PoolStats(bean.getActiveConnections(), bean.getIdleConnections(),
+                bean.getTotalConnections(), bean.getThreadsAwaitingConnection(),
+                PoolRegistry.getReferences(this)));
     }
 
     @Override
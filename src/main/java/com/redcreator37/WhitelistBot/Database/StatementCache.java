@@ -0,0 +1,175 @@
+package com.redcreator37.WhitelistBot.Database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Prepares each query only once per connection and reuses the prepared
+ * statement for all following calls.
+ * <p>
+ * There is one cache for each connection, returned by
+ * {@link StatementCache#of(Connection)}. The statements are shared by
+ * all threads using the connection, so each call holds the statement
+ * for as long as it runs. The statements are closed along with the
+ * cache.
+ */
+public final class StatementCache implements AutoCloseable {
+
+    /**
+     * A call which uses a prepared statement
+     *
+     * @param <T> the type of the returned value
+     */
+    @FunctionalInterface
+    public interface StatementCall<T> {
+        T call(PreparedStatement st) throws SQLException;
+    }
+
+    /**
+     * The caches of all open connections
+     */
+    private static final Map<Connection, StatementCache> caches = new ConcurrentHashMap<>();
+
+    private static final LongAdder prepared = new LongAdder();
+    private static final LongAdder reused = new LongAdder();
+
+    private final Connection con;
+
+    /**
+     * The prepared statements, keyed by their SQL
+     */
+    private final Map<String, PreparedStatement> statements = new ConcurrentHashMap<>();
+
+    private volatile boolean closed = false;
+
+    /**
+     * Constructs a new StatementCache instance
+     *
+     * @param con the connection to prepare the statements on
+     */
+    private StatementCache(Connection con) {
+        this.con = con;
+    }
+
+    /**
+     * Returns the statement cache of this connection, creating it if
+     * it doesn't exist yet
+     *
+     * @param con the database connection
+     * @return the connection's {@link StatementCache}
+     */
+    public static StatementCache of(Connection con) {
+        return caches.computeIfAbsent(con, StatementCache::new);
+    }
+
+    /**
+     * Runs this call using the prepared statement for this SQL,
+     * preparing it first if this is the first call with it. The
+     * statement's parameters are cleared before the call.
+     *
+     * @param sql  the SQL of the statement
+     * @param call the call to run, which sets the parameters and
+     *             executes the statement
+     * @param <T>  the type of the returned value
+     * @return the value returned by the call
+     * @throws SQLException on errors or if the cache has been closed
+     */
+    public <T> T execute(String sql, StatementCall<T> call) throws SQLException {
+        PreparedStatement st = prepare(sql);
+        synchronized (st) {
+            st.clearParameters();
+            return call.call(st);
+        }
+    }
+
+    /**
+     * Executes the update statement with this SQL, setting the string
+     * parameters in this order
+     *
+     * @param sql        the SQL of the statement
+     * @param parameters the values of the statement's parameters
+     * @return the number of changed rows
+     * @throws SQLException on errors or if the cache has been closed
+     */
+    public int update(String sql, String... parameters) throws SQLException {
+        return execute(sql, st -> {
+            for (int i = 0; i < parameters.length; i++)
+                st.setString(i + 1, parameters[i]);
+            return st.executeUpdate();
+        });
+    }
+
+    /**
+     * Returns the prepared statement for this SQL, preparing it if it
+     * isn't cached yet
+     *
+     * @param sql the SQL of the statement
+     * @return the prepared statement
+     * @throws SQLException on errors or if the cache has been closed
+     */
+    private PreparedStatement prepare(String sql) throws SQLException {
+        PreparedStatement st = statements.get(sql);
+        if (st != null) {
+            reused.increment();
+            return st;
+        }
+        synchronized (this) {
+            if (closed) throw new SQLException("The statement cache has been closed");
+            st = statements.get(sql);
+            if (st == null) {
+                st = con.prepareStatement(sql);
+                statements.put(sql, st);
+                prepared.increment();
+            } else reused.increment();
+            return st;
+        }
+    }
+
+    /**
+     * Closes all cached statements and removes the cache. Doesn't close
+     * the connection.
+     *
+     * @throws SQLException if any of the statements failed to close,
+     *                      after attempting to close all of them
+     */
+    @Override
+    public synchronized void close() throws SQLException {
+        closed = true;
+        caches.remove(con, this);
+        SQLException failure = null;
+        for (PreparedStatement st : statements.values()) {
+            try {
+                st.close();
+            } catch (SQLException e) {
+                if (failure == null) failure = e;
+                else failure.addSuppressed(e);
+            }
+        }
+        statements.clear();
+        if (failure != null) throw failure;
+    }
+
+    /**
+     * Returns the number of statements prepared so far
+     *
+     * @return the number of prepared statements
+     */
+    public static long getPrepared() {
+        return prepared.sum();
+    }
+
+    /**
+     * Returns the number of calls which reused an already prepared
+     * statement
+     *
+     * @return the number of reused statements
+     */
+    public static long getReused() {
+        return reused.sum();
+    }
+
+}
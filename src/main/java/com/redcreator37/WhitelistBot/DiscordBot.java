@@ -1,21 +1,40 @@
 package com.redcreator37.WhitelistBot;
 
 import com.redcreator37.WhitelistBot.BackgroundTasks.DataAutoSave;
+import com.redcreator37.WhitelistBot.BackgroundTasks.JournalReplay;
+import com.redcreator37.WhitelistBot.BackgroundTasks.WhitelistRefresh;
+import com.redcreator37.WhitelistBot.BackgroundTasks.WriteBehindFlush;
+import com.redcreator37.WhitelistBot.Caching.EntityCache;
+import com.redcreator37.WhitelistBot.Commands.ArgumentTokenizer;
 import com.redcreator37.WhitelistBot.Commands.BotCommand;
+import com.redcreator37.WhitelistBot.Commands.BotCommands.BulkUnlist;
+import com.redcreator37.WhitelistBot.Commands.BotCommands.BulkWhitelist;
+import com.redcreator37.WhitelistBot.Commands.BotCommands.CheckPlayer;
 import com.redcreator37.WhitelistBot.Commands.BotCommands.EmbedAdminData;
 import com.redcreator37.WhitelistBot.Commands.BotCommands.EmbedDatabaseData;
+import com.redcreator37.WhitelistBot.Commands.BotCommands.EmbedStats;
+import com.redcreator37.WhitelistBot.Commands.BotCommands.FindPlayers;
 import com.redcreator37.WhitelistBot.Commands.BotCommands.LeaveGuild;
 import com.redcreator37.WhitelistBot.Commands.BotCommands.ListWhitelisted;
 import com.redcreator37.WhitelistBot.Commands.BotCommands.SetAdmin;
 import com.redcreator37.WhitelistBot.Commands.BotCommands.SetDatabase;
+import com.redcreator37.WhitelistBot.Commands.BotCommands.SetLanguage;
 import com.redcreator37.WhitelistBot.Commands.BotCommands.UnlistPlayer;
 import com.redcreator37.WhitelistBot.Commands.BotCommands.WhitelistPlayer;
-import com.redcreator37.WhitelistBot.Commands.Command;
+import com.redcreator37.WhitelistBot.Commands.CommandRouter;
 import com.redcreator37.WhitelistBot.Commands.CommandUtils;
+import com.redcreator37.WhitelistBot.Commands.ListSessions;
 import com.redcreator37.WhitelistBot.DataModels.Guild;
+import com.redcreator37.WhitelistBot.DataModels.MutationJournal;
+import com.redcreator37.WhitelistBot.DataModels.WriteBehindQueue;
+import com.redcreator37.WhitelistBot.Database.BotHandling.CachesDb;
 import com.redcreator37.WhitelistBot.Database.BotHandling.DbInstances;
 import com.redcreator37.WhitelistBot.Database.BotHandling.GuildsDb;
 import com.redcreator37.WhitelistBot.Database.BotHandling.LocalDb;
+import com.redcreator37.WhitelistBot.Database.DbExecutor;
+import com.redcreator37.WhitelistBot.Database.GameHandling.CircuitBreaker;
+import com.redcreator37.WhitelistBot.Database.StatementCache;
+import com.redcreator37.WhitelistBot.Permissions.PermissionEngine;
 import discord4j.common.util.Snowflake;
 import discord4j.core.DiscordClientBuilder;
 import discord4j.core.GatewayDiscordClient;
@@ -26,15 +45,20 @@ import reactor.core.publisher.Mono;
 
 import java.io.File;
 import java.io.IOException;
+import java.lang.reflect.Array;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.text.MessageFormat;
+import java.time.Duration;
 import java.time.Instant;
-import java.util.Arrays;
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 import static com.redcreator37.WhitelistBot.Localizations.lc;
 
@@ -63,14 +87,14 @@ public class DiscordBot {
     private static Connection localDb = null;
 
     /**
-     * A {@link HashMap} holding all currently implemented commands
+     * The {@link CommandRouter} holding all currently implemented commands
      */
-    private static final Map<String, Command> commands = new HashMap<>();
+    private static final CommandRouter commands = new CommandRouter(cmdPrefix);
 
     /**
-     * A {@link HashMap} of all registered guilds
+     * A {@link ConcurrentHashMap} of all registered guilds
      */
-    public static HashMap<Snowflake, Guild> guilds = new HashMap<>();
+    public static Map<Snowflake, Guild> guilds = new ConcurrentHashMap<>();
 
     /**
      * The currently used local database support object
@@ -82,6 +106,24 @@ public class DiscordBot {
      */
     private static DbInstances instancesDb = null;
 
+    /**
+     * The cache refresh database
+     */
+    private static CachesDb cachesDb = null;
+
+    /**
+     * The maximum number of guild databases connected to at the same
+     * time during startup
+     */
+    private static final int CONNECT_PARALLELISM = Integer.getInteger("bot.startup.connectParallelism", 4);
+
+    /**
+     * The time after which the remaining guild databases are left to
+     * connect on first use
+     */
+    private static final Duration CONNECT_DEADLINE = Duration.ofSeconds(Integer
+            .getInteger("bot.startup.connectDeadlineSeconds", 30));
+
     /**
      * Registers this {@link C command} into the global {@link MessageCreateEvent}
      * event dispatcher
@@ -95,13 +137,11 @@ public class DiscordBot {
      */
     @SuppressWarnings("OptionalGetWithoutIsPresent")
     private static <C extends BotCommand> void registerCommand(String cmd, boolean parseParams, C command) {
-        if (parseParams)
-            commands.put(cmd, e -> Mono.justOrEmpty(e.getMessage().getContent())
-                    .map(cnt -> Arrays.asList(cnt.split(" ")))
-                    .doOnNext(params -> Mono.justOrEmpty(guilds.get(e.getGuildId().get()))
-                            .flatMap(guild -> command.execute(params, guild, e)).block()).then());
-        else commands.put(cmd, e -> Mono.just(guilds.get(e.getGuildId().get()))
-                .flatMap(guild -> command.execute(null, guild, e).then()));
+        commands.register(cmd, e -> Mono.justOrEmpty(guilds.get(e.getGuildId().get()))
+                .flatMap(guild -> guild.getMailbox().submit(() -> command.execute(parseParams
+                        ? ArgumentTokenizer.tokenize(e.getMessage().getContent()) : null, guild, e))
+                        .onErrorResume(CircuitBreaker::isConnectionFailure,
+                                ex -> CommandUtils.dbUnavailableEmbed(e, guild))));
     }
 
     /**
@@ -111,11 +151,19 @@ public class DiscordBot {
         registerCommand("list", false, new ListWhitelisted());
         registerCommand("whitelist", true, new WhitelistPlayer());
         registerCommand("unlist", true, new UnlistPlayer());
+        registerCommand("bulkwhitelist", true, new BulkWhitelist());
+        registerCommand("bulkunlist", true, new BulkUnlist());
+        registerCommand("find", true, new FindPlayers());
+        registerCommand("check", true, new CheckPlayer());
         registerCommand("getadmin", false, new EmbedAdminData());
         registerCommand("setadmin", true, new SetAdmin());
         registerCommand("getdatabase", false, new EmbedDatabaseData());
         registerCommand("setdatabase", true, new SetDatabase());
         registerCommand("kickbot", false, new LeaveGuild());
+        registerCommand("stats", false, new EmbedStats());
+        registerCommand("setlanguage", true, new SetLanguage());
+        commands.registerAlias("wl", "whitelist");
+        commands.registerAlias("ul", "unlist");
     }
 
     /**
@@ -128,16 +176,15 @@ public class DiscordBot {
      * @return the status message
      */
     private static Mono<String> addGuild(Guild guild, GuildCreateEvent event) {
-        try {
-            guildsDb.addGuild(guild);
-            guilds.put(guild.getSnowflake(), guild);
-            CommandUtils.sendWelcome(event.getGuild());
-            return Mono.just(MessageFormat.format(lc("registered-guild"),
-                    guild.getSnowflake().asString()));
-        } catch (SQLException ex) {
-            return Mono.just(MessageFormat.format(lc("warn-guild-add-failed"),
-                    ex.getMessage()));
-        }
+        return DbExecutor.run(() -> guildsDb.addGuild(guild))
+                .doOnSuccess(unused -> guilds.put(guild.getSnowflake(), guild))
+                .then(CommandUtils.sendWelcome(event.getGuild())
+                        .onErrorResume(ex -> Mono.fromRunnable(() -> System.err.println(MessageFormat
+                                .format(lc("warn-welcome-failed"), ex.getMessage())))))
+                .thenReturn(MessageFormat.format(lc("registered-guild"),
+                        guild.getSnowflake().asString()))
+                .onErrorResume(SQLException.class, ex -> Mono.just(MessageFormat
+                        .format(lc("warn-guild-add-failed"), ex.getMessage())));
     }
 
     /**
@@ -147,28 +194,51 @@ public class DiscordBot {
      * @return the status message
      */
     public static Mono<Boolean> removeGuild(Guild guild) {
-        try {
+        return DbExecutor.run(() -> {
+            cachesDb.clearCacheData(guild.getSnowflake());
             guildsDb.removeGuild(guild);
-            guilds.remove(guild.getSnowflake());
-            System.out.println(MessageFormat.format(lc("unregistered-guild"),
-                    guild.getSnowflake().asString()));
-            return Mono.just(true);
-        } catch (SQLException ex) {
-            System.err.println(MessageFormat.format(lc("warn-guild-remove-failed"),
-                    ex.getMessage()));
-            return Mono.just(false);
-        }
+        })
+                .then(Mono.fromCallable(() -> {
+                    guilds.remove(guild.getSnowflake());
+                    guild.closeSharedDb();
+                    guild.deleteJournal();
+                    System.out.println(MessageFormat.format(lc("unregistered-guild"),
+                            guild.getSnowflake().asString()));
+                    return true;
+                }))
+                .onErrorResume(SQLException.class, ex -> {
+                    System.err.println(MessageFormat.format(lc("warn-guild-remove-failed"),
+                            ex.getMessage()));
+                    return Mono.just(false);
+                });
+    }
+
+    /**
+     * Saves the language of this {@link Guild} to the local database,
+     * leaving it to the auto-save if it fails
+     *
+     * @param guild the {@link Guild} with the changed language
+     * @return an empty {@link Mono}, completed once saved
+     */
+    public static Mono<Void> saveLocale(Guild guild) {
+        return DbExecutor.run(() -> guildsDb.updateLocale(guild))
+                .onErrorResume(SQLException.class, ex -> Mono.fromRunnable(() -> System.err.println(MessageFormat
+                        .format(lc("writing-guild-data-failed-reason"), guild.getSnowflake().asString(),
+                                ex.getMessage()))));
     }
 
     /**
      * Initializes and hooks up the event handlers
      */
     private static void setUpEventDispatcher() {
+        EntityCache.attach(client);
+        PermissionEngine.attach(client);
+        ListSessions.attach(client);
+        WriteBehindFlush.attach(client);
         client.getEventDispatcher().on(MessageCreateEvent.class)
-                .flatMap(e -> Mono.just(e.getMessage().getContent())
-                        .flatMap(content -> Flux.fromIterable(commands.entrySet())
-                                .filter(entry -> content.startsWith(cmdPrefix + entry.getKey()))
-                                .flatMap(entry -> entry.getValue().execute(e)).next()))
+                .flatMap(e -> commands.route(e).onErrorResume(ex -> Mono.fromRunnable(() ->
+                        System.err.println(MessageFormat.format(lc("warn-command-failed"),
+                                e.getMessage().getContent(), ex.getMessage())))))
                 .subscribe();
         client.getEventDispatcher().on(GuildCreateEvent.class)
                 .flatMap(e -> Mono.just(e.getGuild())
@@ -176,7 +246,7 @@ public class DiscordBot {
                         .flatMap(guild -> {
                             if (guilds.get(guild.getSnowflake()) != null)
                                 return Mono.empty();
-                            return Mono.just(addGuild(guild, e));
+                            return addGuild(guild, e);
                         }))
                 .subscribe(System.out::println);
     }
@@ -190,6 +260,7 @@ public class DiscordBot {
             localDb = LocalDb.connect("bot.db");
             guildsDb = new GuildsDb(localDb);
             instancesDb = new DbInstances(localDb);
+            cachesDb = new CachesDb(localDb);
         } catch (SQLException e) {
             System.err.println(MessageFormat.format(lc("error-format"), e.getMessage()));
         }
@@ -203,18 +274,16 @@ public class DiscordBot {
                     e.getMessage()));
             success = false;
         }
+        else try {
+            new LocalDb().upgradeDatabaseTables(localDb);
+        } catch (SQLException e) {
+            System.err.println(MessageFormat.format(lc("error-creating-db"),
+                    e.getMessage()));
+            success = false;
+        }
 
         try {
-            guilds = guildsDb.getGuilds();
-            guilds.values().forEach(guild -> {
-                try {
-                    if (guild.getSharedDbProvider() != null)
-                        guild.connectSharedDb();
-                } catch (SQLException e) {
-                    System.err.println(MessageFormat.format(lc("connecting-failed-for-guild"),
-                            guild.getSnowflake().toString(), e.getMessage()));
-                }
-            });
+            guilds = new ConcurrentHashMap<>(guildsDb.getGuilds());
             System.out.println(lc("db-loaded-success"));
         } catch (SQLException e) {
             System.err.println(MessageFormat.format(lc("error-reading-db"),
@@ -228,12 +297,86 @@ public class DiscordBot {
         }
     }
 
+    /**
+     * Connects to the shared databases of all guilds with bounded
+     * parallelism. Guilds which aren't connected once the deadline
+     * passes (or whose connection fails) connect on first use instead.
+     *
+     * @return an empty {@link Mono}, completed once all guilds are
+     * connected or the deadline has passed
+     */
+    private static Mono<Void> connectGuilds() {
+        long started = System.nanoTime();
+        List<Guild> pending = guilds.values().stream()
+                .filter(guild -> guild.getSharedDbProvider() != null)
+                .collect(Collectors.toList());
+        AtomicInteger connected = new AtomicInteger();
+        return Flux.fromIterable(pending)
+                .flatMap(guild -> guild.ensureConnected()
+                        .doOnSuccess(unused -> connected.incrementAndGet())
+                        .onErrorResume(e -> Mono.fromRunnable(() -> System.err.println(MessageFormat
+                                .format(lc("connecting-failed-for-guild"), guild.getSnowflake().asString(),
+                                        e.getMessage())))), CONNECT_PARALLELISM)
+                .then()
+                .timeout(CONNECT_DEADLINE, Mono.fromRunnable(() -> System.err.println(MessageFormat
+                        .format(lc("connect-deadline-passed"), pending.size() - connected.get()))))
+                .doFinally(signal -> System.out.println(MessageFormat.format(lc("guild-dbs-connected"),
+                        connected.get(), pending.size(), elapsedMillis(started))));
+    }
+
+    /**
+     * Returns the time passed since this moment
+     *
+     * @param since the moment, as returned by {@link System#nanoTime()}
+     * @return the elapsed time in milliseconds
+     */
+    private static long elapsedMillis(long since) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - since);
+    }
+
     /**
      * Sets up multi-threaded background tasks
      */
     private static void setUpBackgroundTasks() {
-        Executors.newSingleThreadScheduledExecutor().scheduleAtFixedRate(
-                new DataAutoSave(instancesDb, guildsDb), 0, 15, TimeUnit.MINUTES);
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        executor.scheduleAtFixedRate(new DataAutoSave(instancesDb, guildsDb), 0, 15, TimeUnit.MINUTES);
+        executor.scheduleAtFixedRate(BotCommand::sweepRateLimiters, 5, 5, TimeUnit.MINUTES);
+        executor.scheduleAtFixedRate(ListSessions::sweep, 1, 1, TimeUnit.MINUTES);
+        if (WriteBehindQueue.ENABLED)
+            executor.scheduleAtFixedRate(() -> WriteBehindFlush.flushAll().subscribe(),
+                    WriteBehindFlush.INTERVAL_SECONDS, WriteBehindFlush.INTERVAL_SECONDS, TimeUnit.SECONDS);
+        if (MutationJournal.ENABLED) {
+            // the syncs get their own thread, so that the other tasks can't delay them
+            Executors.newSingleThreadScheduledExecutor().scheduleAtFixedRate(MutationJournal::syncAll,
+                    MutationJournal.SYNC_MILLIS, MutationJournal.SYNC_MILLIS, TimeUnit.MILLISECONDS);
+            executor.scheduleWithFixedDelay(() -> JournalReplay.replayAll().subscribe(), 0,
+                    JournalReplay.INTERVAL_SECONDS, TimeUnit.SECONDS);
+        }
+        try {
+            executor.scheduleWithFixedDelay(new WhitelistRefresh(cachesDb), 1, 1, TimeUnit.MINUTES);
+        } catch (SQLException e) {
+            System.err.println(MessageFormat.format(lc("error-reading-db"), e.getMessage()));
+        }
+    }
+
+    /**
+     * Installs BlockHound if the <code>bot.detectBlocking</code> system
+     * property is set, which makes any blocking call on a non-blocking
+     * (ex. event loop) thread fail with an error. Requires the bot to be
+     * built with the <code>detect-blocking</code> Maven profile.
+     */
+    private static void setUpBlockingDetection() {
+        if (!Boolean.getBoolean("bot.detectBlocking")) return;
+        try {
+            Class<?> integration = Class.forName("reactor.blockhound.integration.BlockHoundIntegration");
+            Class.forName("reactor.blockhound.BlockHound")
+                    .getMethod("install", Array.newInstance(integration, 0).getClass())
+                    .invoke(null, Array.newInstance(integration, 0));
+            System.out.println(lc("blocking-detection-enabled"));
+        } catch (ReflectiveOperationException e) {
+            System.err.println(MessageFormat.format(lc("blocking-detection-unavailable"),
+                    e.toString()));
+        }
     }
 
     /**
@@ -246,27 +389,40 @@ public class DiscordBot {
             System.exit(1);
         }
 
+        long started = System.nanoTime();
+        setUpBlockingDetection();
         setUpCommands();
         setUpDatabase();
+        long localDbMillis = elapsedMillis(started);
 
+        // connect to the guild databases while logging in
+        connectGuilds().subscribe();
+        long loginStarted = System.nanoTime();
         client = DiscordClientBuilder.create(args[0]).build().login().block();
         if (client == null) {
             System.err.println(lc("login-failed"));
             System.exit(1);
         }
+        long loginMillis = elapsedMillis(loginStarted);
         setUpEventDispatcher();
         setUpBackgroundTasks();
+        System.out.println(MessageFormat.format(lc("startup-timing"), localDbMillis,
+                loginMillis, elapsedMillis(started)));
         // close the database connection on shutdown
-        client.onDisconnect().filter(unused -> {
-            try {
-                new DataAutoSave(instancesDb, guildsDb).run();   // trigger manual data save
-                localDb.close();
-            } catch (SQLException e) {
-                System.err.println(MessageFormat.format(lc("warn-db-close-failed"),
-                        e.getMessage()));
-            }
-            return true;
-        }).block();
+        client.onDisconnect()
+                .then(WriteBehindFlush.flushAll().timeout(Duration.ofSeconds(30), Mono.empty()))
+                .then(Mono.fromRunnable(() -> {
+                    try {
+                        new DataAutoSave(instancesDb, guildsDb).run();   // trigger manual data save
+                        StatementCache.of(localDb).close();
+                        localDb.close();
+                        guilds.values().forEach(Guild::closeSharedDb);
+                        MutationJournal.closeAll();
+                    } catch (SQLException e) {
+                        System.err.println(MessageFormat.format(lc("warn-db-close-failed"),
+                                e.getMessage()));
+                    }
+                })).block();
     }
 
 }
@@ -1,8 +1,14 @@
 package com.redcreator37.WhitelistBot;
 
+import java.text.MessageFormat;
+import java.util.Collections;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.MissingResourceException;
 import java.util.Optional;
 import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Handles all localization-specific aspects of the bot
@@ -10,42 +16,107 @@ import java.util.ResourceBundle;
 public class Localizations {
 
     /**
-     * The {@link ResourceBundle} object with all user-facing messages
+     * The locale used for console output and guilds without a selected
+     * language
      */
-    @SuppressWarnings("OptionalGetWithoutIsPresent")
-    private static final ResourceBundle strings =
-            getBundleFromLangCode("Strings", "en_US").get();
+    public static final Locale DEFAULT_LOCALE = new Locale("en", "US");
+
+    /**
+     * All locales with a translated strings {@link ResourceBundle}
+     */
+    public static final List<Locale> SUPPORTED = Collections.singletonList(DEFAULT_LOCALE);
+
+    /**
+     * The strings {@link ResourceBundle} objects, loaded on first use
+     */
+    private static final Map<Locale, ResourceBundle> bundles = new ConcurrentHashMap<>();
+
+    /**
+     * Parsed message patterns, keyed by locale and localization key
+     */
+    private static final Map<Locale, Map<String, MessageFormat>> formats = new ConcurrentHashMap<>();
 
     /**
      * Returns the localized message with the matching tag from the
-     * strings {@link ResourceBundle}
+     * default strings {@link ResourceBundle}
      *
      * @param key the localization key
-     * @return the message (or <code>null</code> if the key isn't valid)
+     * @return the message
+     * @throws MissingResourceException if the key isn't valid
      */
     public static String lc(String key) {
-        return strings.getString(key);
+        return lc(DEFAULT_LOCALE, key);
+    }
+
+    /**
+     * Returns the localized message with the matching tag from the
+     * strings {@link ResourceBundle} for this locale, falling back to
+     * the default locale for untranslated messages
+     *
+     * @param locale the locale to use
+     * @param key    the localization key
+     * @return the message
+     * @throws MissingResourceException if the key isn't valid
+     */
+    public static String lc(Locale locale, String key) {
+        ResourceBundle bundle = getBundle(locale);
+        if (!bundle.containsKey(key) && !locale.equals(DEFAULT_LOCALE))
+            bundle = getBundle(DEFAULT_LOCALE);
+        return bundle.getString(key);
     }
 
     /**
-     * Returns the {@link ResourceBundle} with the matching name for this
-     * language code
+     * Formats the localized message with the matching tag using the
+     * default locale
+     *
+     * @param key  the localization key
+     * @param args the arguments to insert into the message
+     * @return the formatted message
+     */
+    public static String format(String key, Object... args) {
+        return format(DEFAULT_LOCALE, key, args);
+    }
+
+    /**
+     * Formats the localized message with the matching tag. The message
+     * pattern is only parsed on first use for each locale.
+     *
+     * @param locale the locale to use
+     * @param key    the localization key
+     * @param args   the arguments to insert into the message
+     * @return the formatted message
+     */
+    public static String format(Locale locale, String key, Object... args) {
+        MessageFormat parsed = formats.computeIfAbsent(locale, l -> new ConcurrentHashMap<>())
+                .computeIfAbsent(key, k -> new MessageFormat(lc(locale, k), locale));
+        // MessageFormat isn't thread-safe, but cloning it is much cheaper
+        // than parsing the pattern again
+        return ((MessageFormat) parsed.clone()).format(args);
+    }
+
+    /**
+     * Returns the supported locale matching this language code
      *
-     * @param baseName the full name of the {@link ResourceBundle} to retrieve
      * @param langCode a code in the language_country format
      *                 (ex. <code>en_US</code>)
-     * @return the matching {@link ResourceBundle} or an empty {@link Optional}
-     * if the matching bundle-language combination wasn't found
-     */
-    @SuppressWarnings("SameParameterValue")
-    private static Optional<ResourceBundle> getBundleFromLangCode(String baseName, String langCode) {
-        String[] locale = langCode.split("_");
-        try {
-            return Optional.of(ResourceBundle.getBundle(baseName, new Locale(locale[0]
-                    .toLowerCase(), locale[1].toUpperCase())));
-        } catch (Exception e) {
-            return Optional.empty();
-        }
+     * @return the matching locale or an empty {@link Optional} if the
+     * code is invalid or the language isn't supported
+     */
+    public static Optional<Locale> fromLangCode(String langCode) {
+        String[] locale = langCode.split("[_-]");
+        if (locale.length != 2) return Optional.empty();
+        Locale parsed = new Locale(locale[0].toLowerCase(), locale[1].toUpperCase());
+        return SUPPORTED.contains(parsed) ? Optional.of(parsed) : Optional.empty();
+    }
+
+    /**
+     * Returns the strings {@link ResourceBundle} for this locale
+     *
+     * @param locale the locale of the bundle
+     * @return the matching bundle
+     */
+    private static ResourceBundle getBundle(Locale locale) {
+        return bundles.computeIfAbsent(locale, l -> ResourceBundle.getBundle("Strings", l));
     }
 
 }
@@ -0,0 +1,167 @@
+package com.redcreator37.WhitelistBot.Permissions;
+
+import discord4j.common.util.Snowflake;
+import discord4j.core.GatewayDiscordClient;
+import discord4j.core.event.EventDispatcher;
+import discord4j.core.event.domain.guild.GuildCreateEvent;
+import discord4j.core.event.domain.guild.GuildDeleteEvent;
+import discord4j.core.event.domain.role.RoleCreateEvent;
+import discord4j.core.event.domain.role.RoleDeleteEvent;
+import discord4j.core.event.domain.role.RoleUpdateEvent;
+import discord4j.core.object.entity.Member;
+import discord4j.core.object.entity.Role;
+import reactor.core.publisher.Mono;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Resolves permissions using cached role IDs instead of comparing role
+ * names of every member on each command.
+ * <p>
+ * Role names are resolved to role IDs once per guild and the resolved
+ * sets are kept until a role in that guild changes. The member's role
+ * IDs come with the command's message, so a permission check is a
+ * plain memory lookup.
+ */
+public final class PermissionEngine {
+
+    /**
+     * The cached role data for a single guild
+     */
+    private static final class GuildRoles {
+
+        /**
+         * The names of all roles in the guild, keyed by their ID
+         */
+        private final Map<Snowflake, String> names = new ConcurrentHashMap<>();
+
+        /**
+         * The IDs of all roles with the matching name, resolved on
+         * first use and cleared whenever any role changes
+         */
+        private final Map<String, Set<Snowflake>> resolved = new ConcurrentHashMap<>();
+
+        private void putRole(Role role) {
+            names.put(role.getId(), role.getName());
+            resolved.clear();
+        }
+
+        private void removeRole(Snowflake roleId) {
+            names.remove(roleId);
+            resolved.clear();
+        }
+
+        /**
+         * Returns the IDs of all roles in this guild with this name
+         *
+         * @param name the name of the roles
+         * @return the {@link Set} of matching role IDs
+         */
+        private Set<Snowflake> resolve(String name) {
+            return resolved.computeIfAbsent(name, n -> {
+                Set<Snowflake> ids = new HashSet<>();
+                names.forEach((id, roleName) -> {
+                    if (roleName.equals(n)) ids.add(id);
+                });
+                return Collections.unmodifiableSet(ids);
+            });
+        }
+
+        /**
+         * Checks whether any of these role IDs belongs to a role with
+         * this name
+         *
+         * @param roleIds the role IDs of the member
+         * @param name    the name of the role to look for
+         * @return <code>true</code> if the member has the role
+         */
+        private boolean hasRole(Set<Snowflake> roleIds, String name) {
+            Set<Snowflake> required = resolve(name);
+            if (required.isEmpty()) return false;
+            for (Snowflake id : roleIds)
+                if (required.contains(id)) return true;
+            return false;
+        }
+
+    }
+
+    /**
+     * Cached role data for all guilds, keyed by the guild's snowflake
+     */
+    private static final Map<Snowflake, GuildRoles> guilds = new ConcurrentHashMap<>();
+
+    /**
+     * Non-instantiable
+     */
+    private PermissionEngine() {
+    }
+
+    /**
+     * Hooks the engine up to the gateway events of this client
+     *
+     * @param client the {@link GatewayDiscordClient} to listen to
+     */
+    public static void attach(GatewayDiscordClient client) {
+        EventDispatcher dispatcher = client.getEventDispatcher();
+        dispatcher.on(GuildCreateEvent.class)
+                .flatMap(e -> e.getGuild().getRoles().collectList()
+                        .doOnNext(roles -> load(e.getGuild().getId(), roles)))
+                .subscribe();
+        dispatcher.on(GuildDeleteEvent.class).subscribe(e -> guilds.remove(e.getGuildId()));
+        dispatcher.on(RoleCreateEvent.class).subscribe(e -> ifLoaded(e.getGuildId(),
+                roles -> roles.putRole(e.getRole())));
+        dispatcher.on(RoleUpdateEvent.class).subscribe(e -> ifLoaded(e.getCurrent().getGuildId(),
+                roles -> roles.putRole(e.getCurrent())));
+        dispatcher.on(RoleDeleteEvent.class).subscribe(e -> ifLoaded(e.getGuildId(),
+                roles -> roles.removeRole(e.getRoleId())));
+    }
+
+    /**
+     * Replaces the cached role data for this guild
+     *
+     * @param guildId the snowflake of the guild
+     * @param roles   all roles in the guild
+     * @return the new role data
+     */
+    private static GuildRoles load(Snowflake guildId, List<Role> roles) {
+        GuildRoles data = new GuildRoles();
+        roles.forEach(role -> data.names.put(role.getId(), role.getName()));
+        guilds.put(guildId, data);
+        return data;
+    }
+
+    /**
+     * Runs this action if the role data for this guild has already been
+     * loaded
+     *
+     * @param guildId the snowflake of the guild
+     * @param action  the action to run
+     */
+    private static void ifLoaded(Snowflake guildId, Consumer<GuildRoles> action) {
+        GuildRoles roles = guilds.get(guildId);
+        if (roles != null) action.accept(roles);
+    }
+
+    /**
+     * Checks whether this {@link Member} has a role with this name
+     *
+     * @param member the {@link Member} to check
+     * @param name   the name of the required role
+     * @return <code>true</code> if the member has the role,
+     * <code>false</code> otherwise
+     */
+    public static Mono<Boolean> hasRole(Member member, String name) {
+        GuildRoles roles = guilds.get(member.getGuildId());
+        Mono<GuildRoles> data = roles != null ? Mono.just(roles) : member.getGuild()
+                .flatMap(guild -> guild.getRoles().collectList())
+                .map(list -> load(member.getGuildId(), list));
+        return data.map(r -> r.hasRole(member.getRoleIds(), name)).defaultIfEmpty(false);
+    }
+
+}
@@ -4,7 +4,8 @@ create table guilds
         constraint guilds_pk
         primary key,
     joined     date not null,
-    admin_role text default 'admins'
+    admin_role text default 'admins',
+    locale     text default 'en_US'
 );
 --
 create table caches